@@ -1,21 +1,39 @@
 package amazons;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static java.lang.Math.*;
-import java.util.Iterator;
 
 import static amazons.Piece.*;
+import static amazons.Utils.*;
 
-/** A Player that automatically generates moves.
+/** A Player that automatically generates moves.  Its searches (see
+ *  Search) may run in several threads at once ("lazy SMP"): the main
+ *  search runs in the thread that asks for a move, and helper searches
+ *  run in a pool of other threads on their own copies of the board,
+ *  sharing the main search's transposition table and evaluation cache.
+ *  The helpers do not divide the work; they search the same position,
+ *  half of them starting one iteration deeper, and their results in the
+ *  shared table steer and cut off the main search.  When the main
+ *  search runs out of time, the helpers are stopped, and the move is
+ *  taken from whichever search finished the deepest iteration.  An AI
+ *  may instead divide the moves at the root among its threads (see
+ *  RootSplit), and may ponder: go on searching, in the background, the
+ *  position after its move while its opponent thinks (see ponder).
+ *  In the opening, it plays the moves of its book (see OpeningBook),
+ *  if it has one.  Near the end of a game, it first tries to prove a
+ *  win or loss with a proof-number search (see ProofSearch), and plays
+ *  at once if that succeeds.
  *  @author Anastasia
  */
 class AI extends Player {
 
-    /** A position magnitude indicating a win (for white if positive, black
-     *  if negative). */
-    private static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
-    /** A magnitude greater than a normal value. */
-    private static final int INFTY = Integer.MAX_VALUE;
+    /** A position magnitude indicating a win (for the player to move if
+     *  positive, the opponent if negative). */
+    static final int WINNING_VALUE = Search.WINNING_VALUE;
 
     /** A new AI with no piece or controller (intended to produce
      *  a template). */
@@ -30,199 +48,543 @@ class AI extends Player {
 
     @Override
     Player create(Piece piece, Controller controller) {
-        return new AI(piece, controller);
+        AI ai = new AI(piece, controller);
+        ai._tableSize = _tableSize;
+        ai._evalCacheSize = _evalCacheSize;
+        ai._moveTime = _moveTime;
+        ai._gameTime = _gameTime;
+        ai._splitPly = _splitPly;
+        ai._beamWidth = _beamWidth;
+        ai._reduceAfter = _reduceAfter;
+        ai._reduceMoreAfter = _reduceMoreAfter;
+        ai._evaluator = new Evaluator(_evaluator.weights());
+        ai._threads = _threads;
+        ai._rootSplit = _rootSplit;
+        ai._ponder = _ponder;
+        ai._proofEmpty = _proofEmpty;
+        ai._book = _book;
+        return ai;
     }
 
     @Override
     String myMove() {
+        stopThinking();
         Move move = findMove();
         _controller.reportMove(move);
+        if (_ponder) {
+            ponder(move);
+        }
         return move.toString();
     }
 
+    @Override
+    void stopThinking() {
+        if (_pondering != null) {
+            _ponderSearch.stop();
+            try {
+                _pondering.get();
+            } catch (InterruptedException | ExecutionException excp) {
+                throw new Error("pondering failed", excp);
+            }
+            _pondering = null;
+        }
+    }
+
+    /** Start searching, in a background thread, the position after my
+     *  MOVE from the current position, until stopThinking is called.
+     *  The search fills my transposition table and evaluation cache
+     *  with results for my opponent's likely replies and my answers to
+     *  them, which my next search then finds. */
+    private void ponder(Move move) {
+        Board b = new Board(board());
+        b.makeMove(move);
+        if (b.winner() != EMPTY) {
+            return;
+        }
+        prepare();
+        if (_ponderSearch == null) {
+            _ponderSearch =
+                new Search(_table, _evalCache,
+                           new Evaluator(_evaluator.weights()),
+                           _splitPly, _beamWidth, _reduceAfter,
+                           _reduceMoreAfter);
+            _ponderThread = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "ponder");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        Search search = _ponderSearch;
+        search.resume();
+        _table.newSearch();
+        _pondering = _ponderThread.submit(() -> search.deepen(
+            b, 0, Search.MAX_DEPTH, Long.MAX_VALUE, Long.MAX_VALUE));
+    }
+
     /** Return a move for me from the current position, assuming there
-     *  is a move. */
+     *  is a move.  A move from my opening book, if I have one that holds
+     *  the position, is played at once.  Near the end of a game, the
+     *  position is first given to the proof-number solver (see prove).
+     *  Otherwise, or if it finds no proof, the search is given the time
+     *  allotted to this move (see moveBudget), and does not start a
+     *  deeper iteration after half of it has passed. */
     private Move findMove() {
+        long start = System.currentTimeMillis();
         Board b = new Board(board());
-        if (_myPiece == WHITE) {
-            findMove(b, maxDepth(b), true, 1, INFTY, -INFTY);
+        if (b.numMoves() < 2) {
+            _timeUsed = 0;
+        }
+        long budget = moveBudget(b);
+        int move = _book == null ? 0 : _book.probe(b);
+        if (move == 0) {
+            move = prove(b, start + budget / 4);
+        }
+        if (move != 0) {
+            _timeUsed += System.currentTimeMillis() - start;
+            return Move.mv(move);
+        } else if (_rootSplit) {
+            prepare();
+            move = _splitter.findMove(b, Search.MAX_DEPTH, start + budget,
+                                      start + budget / 2);
         } else {
-            findMove(b, maxDepth(b), true, -1, INFTY, -INFTY);
-        }
-        return _lastFoundMove;
-    }
-
-    /** The move found by the last call to one of the ...FindMove methods
-     *  below. */
-    private Move _lastFoundMove;
-
-    /** MaxValue in Alpha Beta prunning.
-     * @return @return maximizer value
-     * @param beta is score
-     * @param alpha is score
-     * @param sense is player
-     * @param saveMove is result move
-     * @param board is board */
-    private int maxValue(Board board, boolean saveMove, int sense,
-                         int alpha, int beta) {
-        int v = -INFTY;
-        Iterator<Move> legalMoves = board.legalMoves();
-        while (legalMoves.hasNext()) {
-            Move m = legalMoves.next();
-            Board successor = new Board(board);
-            successor.makeMove(m);
-
-            int d = maxDepth(successor);
-            int cT = findMove(successor, d, saveMove, -sense, alpha, beta);
-            v = Math.max(v, cT);
-            if (v >= beta) {
-                if (saveMove) {
-                    this._lastFoundMove = m;
-                }
-                return v;
-            }
-            alpha = Math.max(alpha, v);
+            move = search(b, Search.MAX_DEPTH, start + budget,
+                          start + budget / 2);
         }
-        return v;
+        _timeUsed += System.currentTimeMillis() - start;
+        return Move.mv(move);
     }
 
-    /** Find a move from position BOARD and return its value, recording
-     *  the move found in _lastFoundMove iff SAVEMOVE. The move
-     *  should have maximal value or have value > BETA if SENSE==1,
-     *  and minimal value or value < ALPHA if SENSE==-1. Searches up to
-     *  DEPTH levels.  Searching at level 0 simply returns a static estimate
-     *  of the board value and does not set _lastMoveFound. */
-    private int findMove(Board board, int depth, boolean saveMove, int sense,
-                         int alpha, int beta) {
-
-        if (depth == 0 || board.winner() != EMPTY) {
-
-            return staticScore(board);
+    /** Return the best move from BOARD, which is unchanged, if the
+     *  proof-number solver can prove a win or loss for the player to
+     *  move there by time DEADLINE: the first move of the winning line,
+     *  or the move whose refutation took it the most work.  Return 0 if
+     *  the solver is not used, because BOARD has more than _proofEmpty
+     *  empty squares that may still be filled, or if it finds no
+     *  proof. */
+    private int prove(Board board, long deadline) {
+        if (_proofEmpty == 0 || board.numEmpty() > MAX_PROOF_EMPTY) {
+            return 0;
         }
-
-        int result = sense == 1 ? beta : alpha;
-        Iterator<Move> moves = board.legalMoves(sense == 1 ? WHITE : BLACK);
-
-        int currScore = staticScore(board);
-        if (sense == 1 && currScore < beta) {
+        Regions regions = new Regions();
+        board.computeRegions(regions);
+        if (regions.numLive() > _proofEmpty) {
             return 0;
         }
-        if (sense == -1 && currScore > alpha) {
+        if (_prover == null) {
+            _prover = new ProofSearch(PROOF_TABLE_SIZE);
+        }
+        if (_prover.prove(board, deadline) == ProofSearch.UNKNOWN) {
             return 0;
         }
+        return _prover.bestMove();
+    }
 
-        while (moves.hasNext()) {
-            Board check = new Board(board);
-            Move mov = moves.next();
-            check.makeMove(mov);
-            int newAlpha = sense == 1 ? alpha : currScore;
-            int newBeta = sense == 1 ? currScore : beta;
-            int advantage = findMove(check,
-                    depth - 1,
-                    false,
-                    -sense,
-                    newAlpha,
-                    newBeta);
-
-            if ((sense == 1 && advantage > result)
-                    || (sense == -1 && advantage < result)) {
-                result = advantage;
-                if (saveMove) {
-                    _lastFoundMove = mov;
-                }
+    /** Return the value of BOARD for the player to move, as found by
+     *  searching it DEPTH levels deep (half-moves in split-ply mode)
+     *  with no time limit, using all my searches (see search). */
+    int value(Board board, int depth) {
+        return value(board, depth, 0);
+    }
+
+    /** Return the value of BOARD for the player to move, as found by
+     *  value(BOARD, DEPTH), except that once the first iteration has
+     *  finished, the main search stops when it has visited more than
+     *  NODELIMIT nodes (0 for no limit), and returns the value of the
+     *  last iteration that finished.  Afterwards, nodes gives the number
+     *  of nodes visited and bestMove the best move found by the main
+     *  search. */
+    int value(Board board, int depth, long nodeLimit) {
+        prepare();
+        _table.newSearch();
+        Future<?>[] helpers = startHelpers(board, depth);
+        _searches[0].setNodeLimit(nodeLimit);
+        int value = _searches[0].deepen(new Board(board), 0, depth,
+                                        Long.MAX_VALUE, Long.MAX_VALUE);
+        _searches[0].setNodeLimit(0);
+        stopHelpers(helpers);
+        return value;
+    }
+
+    /** Return the number of nodes visited by the last call of value. */
+    long nodes() {
+        return _searches == null ? 0 : _searches[0].nodes();
+    }
+
+    /** Return the code of the best move found by the last call of value,
+     *  or 0 if there is none. */
+    int bestMove() {
+        return _searches == null ? 0 : _searches[0].bestMove();
+    }
+
+    /** Search BOARD, which becomes private to the main search, with all
+     *  my searches, as for Search.deepen with MAXDEPTH, DEADLINE, and
+     *  SOFTDEADLINE, and return the code of the best move found.  The
+     *  helpers run until the main search ends. */
+    private int search(Board board, int maxDepth, long deadline,
+                       long softDeadline) {
+        prepare();
+        _table.newSearch();
+        Future<?>[] helpers = startHelpers(board, maxDepth);
+        _searches[0].deepen(board, 0, maxDepth, deadline, softDeadline);
+        stopHelpers(helpers);
+        int best = _searches[0].bestMove();
+        int bestDepth = _searches[0].completedDepth();
+        for (int i = 1; i < _searches.length; i += 1) {
+            Search helper = _searches[i];
+            if (helper.completedDepth() > bestDepth
+                && helper.bestMove() != 0) {
+                best = helper.bestMove();
+                bestDepth = helper.completedDepth();
             }
         }
+        return best;
+    }
 
-        return result;
+    /** Start my helper searches, if I have a pool of threads for them,
+     *  on copies of BOARD, to at most MAXDEPTH levels, and return their
+     *  tasks (null for the main search and for helpers not started).
+     *  Half of them skip the first depth. */
+    private Future<?>[] startHelpers(Board board, int maxDepth) {
+        Future<?>[] helpers = new Future<?>[_searches.length];
+        for (int i = 1; i < _searches.length && _pool != null; i += 1) {
+            Search helper = _searches[i];
+            Board copy = new Board(board);
+            int skip = i % 2;
+            helper.resume();
+            helpers[i] = _pool.submit(() -> helper.deepen(
+                copy, skip, maxDepth, Long.MAX_VALUE, Long.MAX_VALUE));
+        }
+        return helpers;
     }
 
-    /** Return a heuristically determined maximum search depth
-     *  based on characteristics of BOARD. */
-    private int maxDepth(Board board) {
-        int N = board.numMoves();
-        System.out.println("hi");
-        int size = Board.SIZE;
-        int cutoff = 3;
-        int check = size * cutoff;
-        int countSpears = 0;
-        for (int col = 0; col < 10; col++) {
-            for (int row = 0; row < 10; row++) {
-                if (board.get(col, row) == SPEAR) {
-                    countSpears += 1;
+    /** Stop the helper searches running as HELPERS (from startHelpers)
+     *  and wait for them to end. */
+    private void stopHelpers(Future<?>[] helpers) {
+        for (int i = 1; i < _searches.length; i += 1) {
+            _searches[i].stop();
+        }
+        for (int i = 1; i < _searches.length; i += 1) {
+            try {
+                if (helpers[i] != null) {
+                    helpers[i].get();
                 }
+            } catch (InterruptedException | ExecutionException excp) {
+                throw new Error("helper search failed", excp);
             }
         }
-        if (N == 0 && (countSpears > check + 2 * cutoff)) {
-            return 2;
+    }
+
+    /** Create my transposition table, evaluation cache, searches, and
+     *  thread pool (or root splitter), if they do not exist yet. */
+    private void prepare() {
+        if (_table == null) {
+            _table = new TranspositionTable(_tableSize);
+        }
+        if (_evalCache == null && _evalCacheSize > 0) {
+            _evalCache = new EvalCache(_evalCacheSize);
         }
-        if (N < check) {
-            return 1;
-        } else {
-            cutoff += 2;
-            check = size * cutoff;
-            if (N < check) {
-                return 2;
-            } else {
-                cutoff += 2;
-                check = size * cutoff;
-                if (N < check) {
-                    return 3;
-                } else {
-                    cutoff += 1;
-                    check = size * cutoff;
-                    if (N < check) {
-                        return 4;
-                    }
-                }
+        if (_searches == null) {
+            _searches = new Search[_threads];
+            for (int i = 0; i < _threads; i += 1) {
+                _searches[i] =
+                    new Search(_table, _evalCache,
+                               new Evaluator(_evaluator.weights()),
+                               _splitPly, _beamWidth, _reduceAfter,
+                               _reduceMoreAfter);
             }
         }
-        System.out.println("at Depth");
-        return 5;
-    }
-
-
-    /** MinValue in Alpha Beta prunning.
-     * @return @return maximizer value
-     * @param saveMove for chosen move
-     * @param beta minimizer
-     * @param alpha maximizer
-     * @param sense player
-     * @param board  board.*/
-    private int minValue(Board board, boolean saveMove, int sense,
-                         int alpha, int beta) {
-        int v = INFTY;
-        Iterator<Move> legalMoves = board.legalMoves();
-        while (legalMoves.hasNext()) {
-            Move m = legalMoves.next();
-            Board successor = new Board(board);
-            successor.makeMove(m);
-
-            int d = maxDepth(successor);
-            int c = findMove(successor, d, saveMove, -sense, alpha, beta);
-            v = Math.min(v, c);
-            if (v <= alpha) {
-                if (saveMove) {
-                    this._lastFoundMove = m;
-                }
-                return v;
+        if (_rootSplit) {
+            if (_splitter == null) {
+                _splitter = new RootSplit(_threads, _table, _evalCache,
+                                          _evaluator, _beamWidth,
+                                          _reduceAfter, _reduceMoreAfter);
             }
-            beta = Math.min(beta, v);
+        } else if (_pool == null && _threads > 1) {
+            _pool = Executors.newFixedThreadPool(_threads - 1, r -> {
+                Thread thread = new Thread(r, "search helper");
+                thread.setDaemon(true);
+                return thread;
+            });
         }
-        return v;
     }
 
-    /** Return a heuristic value for BOARD. */
-    private int staticScore(Board board) {
-        Piece winner = board.winner();
-        if (winner == BLACK) {
-            return -WINNING_VALUE;
-        } else if (winner == WHITE) {
-            return WINNING_VALUE;
+    /** Return the number of milliseconds to spend on a move from BOARD.
+     *  The remaining time for the game is spread evenly over the moves I
+     *  can still expect to make (at most one for every two empty
+     *  squares), and limited to the time allowed for one move.  A
+     *  margin is kept for the work done outside the search. */
+    private long moveBudget(Board board) {
+        long remaining = _gameTime - _timeUsed;
+        int movesLeft = max(1, board.numEmpty() / 2);
+        long budget = min(_moveTime, remaining / movesLeft);
+        return max(1, budget - budget / SAFETY_MARGIN);
+    }
+
+    /** Set the size of the transposition table of this AI, and of the
+     *  AIs it creates, to MEGABYTES megabytes. */
+    void setTableSize(int megabytes) {
+        _tableSize = megabytes;
+        _table = null;
+        discardSearches();
+    }
+
+    /** Set the size of the evaluation cache of this AI, and of the AIs
+     *  it creates, to MEGABYTES megabytes (0 for no cache). */
+    void setEvalCacheSize(int megabytes) {
+        _evalCacheSize = megabytes;
+        _evalCache = null;
+        discardSearches();
+    }
+
+    /** Forget what my searches have learned: clear my transposition
+     *  table, evaluation cache, and move ordering heuristics, so that
+     *  the next search runs as it would in a new AI with my settings. */
+    void forget() {
+        stopThinking();
+        if (_table != null) {
+            _table.clear();
+        }
+        if (_evalCache != null) {
+            _evalCache.clear();
+        }
+        if (_searches != null) {
+            for (Search search : _searches) {
+                search.clear();
+            }
         }
+        if (_ponderSearch != null) {
+            _ponderSearch.clear();
+        }
+    }
 
-        return board.boardScore();
+    /** Return my transposition table, or null if I have none (yet). */
+    TranspositionTable table() {
+        return _table;
     }
 
+    /** Return true iff I am pondering: a search I started in the
+     *  background after my last move is still running. */
+    boolean pondering() {
+        return _pondering != null && !_pondering.isDone();
+    }
 
-}
+    /** Return my evaluation cache, or null if I have none (yet). */
+    EvalCache evalCache() {
+        return _evalCache;
+    }
+
+    /** Limit this AI, and the AIs it creates, to MOVETIME milliseconds
+     *  for any one move and GAMETIME milliseconds for all its moves in a
+     *  game. */
+    void setTimeLimits(long moveTime, long gameTime) {
+        _moveTime = moveTime;
+        _gameTime = gameTime;
+    }
 
+    /** Have this AI, and the AIs it creates, search queen moves and
+     *  spear throws as separate plies iff SPLIT (see findQueenMove).
+     *  Not allowed with root splitting (see setRootSplit). */
+    void setSplitPly(boolean split) {
+        if (split && _rootSplit) {
+            throw error("split-ply search cannot split the root");
+        }
+        _splitPly = split;
+        discardSearches();
+    }
+
+    /** Make the searches of this AI, and of the AIs it creates,
+     *  selective: consider at each node only the BEAMWIDTH moves with
+     *  the best static estimates (all moves if 0), and reduce the depth
+     *  to which moves after the first REDUCEAFTER at a node are first
+     *  searched (none if 0): by one level, and by two for moves after
+     *  the first REDUCEMOREAFTER (none if 0).  Only affects searches of
+     *  whole moves. */
+    void setSelectivity(int beamWidth, int reduceAfter,
+                        int reduceMoreAfter) {
+        _beamWidth = beamWidth;
+        _reduceAfter = reduceAfter;
+        _reduceMoreAfter = reduceMoreAfter;
+        discardSearches();
+    }
+
+    /** Have this AI, and the AIs it creates, evaluate positions with
+     *  the weights of EVALUATOR. */
+    void setEvaluator(Evaluator evaluator) {
+        _evaluator = evaluator;
+        discardSearches();
+    }
+
+    /** Have this AI, and the AIs it creates, try to prove the result
+     *  of positions with at most EMPTY empty squares that may still be
+     *  filled (see Regions.numLive) before searching them, or never if
+     *  EMPTY is 0. */
+    void setProofThreshold(int empty) {
+        _proofEmpty = empty;
+    }
+
+    /** Have this AI, and the AIs it creates, play the moves of BOOK in
+     *  the positions it holds (none if BOOK is null). */
+    void setBook(OpeningBook book) {
+        _book = book;
+    }
+
+    /** Have this AI, and the AIs it creates, search with THREADS threads
+     *  (the calling thread and THREADS - 1 helpers). */
+    void setThreads(int threads) {
+        _threads = threads;
+        discardSearches();
+        if (_pool != null) {
+            _pool.shutdown();
+            _pool = null;
+        }
+    }
+
+    /** Have this AI, and the AIs it creates, divide the moves at the
+     *  root among their threads iff ROOTSPLIT, rather than running
+     *  helper searches.  Not allowed in split-ply mode: the root
+     *  splitter searches whole moves, and the depths it records in the
+     *  shared transposition table would be confused with the half-move
+     *  depths recorded by my other searches. */
+    void setRootSplit(boolean rootSplit) {
+        if (rootSplit && _splitPly) {
+            throw error("split-ply search cannot split the root");
+        }
+        _rootSplit = rootSplit;
+    }
+
+    /** Have this AI, and the AIs it creates, ponder (keep searching
+     *  during the opponent's turn) iff PONDER. */
+    void setPonder(boolean ponder) {
+        _ponder = ponder;
+    }
+
+    /** Discard my searches and root splitter, so that they are created
+     *  again with my current settings when next needed. */
+    private void discardSearches() {
+        stopThinking();
+        _searches = null;
+        _ponderSearch = null;
+        if (_ponderThread != null) {
+            _ponderThread.shutdown();
+            _ponderThread = null;
+        }
+        if (_splitter != null) {
+            _splitter.shutdown();
+            _splitter = null;
+        }
+    }
+
+    /** Default size of the transposition table, in megabytes. */
+    static final int DEFAULT_TABLE_SIZE = 64;
+
+    /** Default size of the evaluation cache, in megabytes. */
+    static final int DEFAULT_EVAL_CACHE_SIZE = 16;
+
+    /** Default limits on the time for one move and for a whole game, in
+     *  milliseconds. */
+    static final long DEFAULT_MOVE_TIME = 10000, DEFAULT_GAME_TIME = 60000;
+
+    /** Default value of the threshold of setProofThreshold. */
+    static final int DEFAULT_PROOF_EMPTY = 24;
+
+    /** Size of the table of the proof-number solver, in megabytes. */
+    static final int PROOF_TABLE_SIZE = 16;
+
+    /** The proof-number solver is never tried with more empty squares
+     *  than this, which saves finding the regions early in a game. */
+    private static final int MAX_PROOF_EMPTY = 60;
+
+    /** The fraction (1/SAFETY_MARGIN) of each move's time held back. */
+    private static final int SAFETY_MARGIN = 10;
+
+    /** Default number of moves at each node searched before the rest are
+     *  reduced. */
+    static final int DEFAULT_REDUCE_AFTER = 8;
+
+    /** Default number of moves at each node searched before the rest are
+     *  reduced by two levels. */
+    static final int DEFAULT_REDUCE_MORE_AFTER = 32;
+
+    /** Size of my transposition table, in megabytes. */
+    private int _tableSize = DEFAULT_TABLE_SIZE;
+
+    /** Results of previous searches, shared by all my searches.  Created
+     *  when first needed, so that templates do not allocate one. */
+    private TranspositionTable _table;
+
+    /** Size of my evaluation cache, in megabytes. */
+    private int _evalCacheSize = DEFAULT_EVAL_CACHE_SIZE;
+
+    /** Static evaluations of positions seen by my searches.  Created
+     *  when first needed. */
+    private EvalCache _evalCache;
+
+    /** Limits on the time for one move and for a game, in
+     *  milliseconds. */
+    private long _moveTime = DEFAULT_MOVE_TIME, _gameTime = DEFAULT_GAME_TIME;
+
+    /** Milliseconds spent on my moves so far in this game. */
+    private long _timeUsed;
+
+    /** True iff my searches treat queen moves and spear throws as
+     *  separate plies. */
+    private boolean _splitPly;
+
+    /** Static evaluation of the positions at the leaves of my
+     *  searches. */
+    private Evaluator _evaluator = new Evaluator();
+
+    /** Number of moves considered at each node (0 for all). */
+    private int _beamWidth;
+
+    /** Number of moves at each node searched before the rest are
+     *  reduced (0 for none). */
+    private int _reduceAfter = DEFAULT_REDUCE_AFTER;
+
+    /** Number of moves at each node searched before the rest are
+     *  reduced by two levels (0 for none). */
+    private int _reduceMoreAfter = DEFAULT_REDUCE_MORE_AFTER;
+
+    /** Default number of search threads. */
+    static final int DEFAULT_THREADS = 1;
+
+    /** Number of my search threads. */
+    private int _threads = DEFAULT_THREADS;
+
+    /** My searches: the main one, then the helpers.  Created when first
+     *  needed. */
+    private Search[] _searches;
+
+    /** Threads running my helper searches, or null if there are
+     *  none. */
+    private ExecutorService _pool;
+
+    /** True iff I divide the root moves among my threads. */
+    private boolean _rootSplit;
+
+    /** My root splitter, or null if not (yet) needed. */
+    private RootSplit _splitter;
+
+    /** True iff I ponder. */
+    private boolean _ponder;
+
+    /** The search I use for pondering, or null if not (yet) needed.  It
+     *  shares my transposition table and evaluation cache. */
+    private Search _ponderSearch;
+
+    /** The thread running _ponderSearch. */
+    private ExecutorService _ponderThread;
+
+    /** The current pondering search, or null if I am not pondering. */
+    private Future<?> _pondering;
+
+    /** Largest number of live empty squares at which I try to prove
+     *  results, or 0 for none. */
+    private int _proofEmpty = DEFAULT_PROOF_EMPTY;
+
+    /** My proof-number solver, or null if not (yet) needed. */
+    private ProofSearch _prover;
+
+    /** My opening book, or null if I have none. */
+    private OpeningBook _book;
+}
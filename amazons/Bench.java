@@ -0,0 +1,79 @@
+package amazons;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/** A fixed suite of positions searched to compare the speed of the
+ *  engine across machines and JVMs, and to detect changes to what it
+ *  does.  Each position of the suite is reached from the initial
+ *  position by a fixed number of random moves, chosen with a fixed seed
+ *  from the legal moves in order of their codes, so that it does not
+ *  change when the order in which moves are generated does.  Each is
+ *  searched by the main search of an AI that first forgets all earlier
+ *  searches (see AI.forget), to a given depth or until it has visited a
+ *  given number of nodes.  Since such a search does the same work on
+ *  every run, the numbers of nodes searched, the values, and the moves
+ *  found are the same wherever it runs, and their signature changes
+ *  only when the search itself does.
+ *  @author Anastasia
+ */
+final class Bench {
+
+    /** Default depth of the search of each position. */
+    static final int DEFAULT_DEPTH = 3;
+
+    /** Numbers of random moves leading to the positions of the suite. */
+    static final int[] PLIES = { 0, 2, 8, 16, 24, 32, 40, 50 };
+
+    /** Return a new Board holding the position reached by PLIES random
+     *  moves from the initial position (see Bench). */
+    static Board position(int plies) {
+        Random random = new Random(SEED);
+        Board board = new Board();
+        int[] moves = new int[Board.MAX_MOVES];
+        for (int k = 0; k < plies; k += 1) {
+            int n = board.generateMoves(moves);
+            Arrays.sort(moves, 0, n);
+            board.makeMove(moves[random.nextInt(n)]);
+        }
+        return board;
+    }
+
+    /** Search each position of the suite with AI to DEPTH levels, or
+     *  until more than NODELIMIT nodes (0 for no limit) have been
+     *  visited, reporting the results for each position and the totals
+     *  on OUT.  Return the signature of the results. */
+    static long run(AI ai, int depth, long nodeLimit, PrintStream out) {
+        long total = 0, signature = SIGNATURE_BASIS;
+        long start = System.nanoTime();
+        for (int i = 0; i < PLIES.length; i += 1) {
+            Board board = position(PLIES[i]);
+            ai.forget();
+            int value = ai.value(board, depth, nodeLimit);
+            long nodes = ai.nodes();
+            out.printf("Position %d (%d moves): %s, value %d, %d nodes%n",
+                       i + 1, PLIES[i], Move.mv(ai.bestMove()), value,
+                       nodes);
+            total += nodes;
+            for (long result : new long[] { nodes, value, ai.bestMove() }) {
+                signature = (signature ^ result) * SIGNATURE_PRIME;
+            }
+        }
+        long nanos = Math.max(System.nanoTime() - start, 1);
+        out.printf("Total nodes: %d%n", total);
+        out.printf("Time: %d ms%n", nanos / 1000000);
+        out.printf("Nodes/second: %.0f%n", total * 1e9 / nanos);
+        out.printf("Signature: %016x%n", signature);
+        return signature;
+    }
+
+    /** Seed of the random moves leading to the positions. */
+    private static final long SEED = 1;
+
+    /** The starting value and multiplier of the signature, which is an
+     *  FNV-1a hash of the node count, value, and best move found for
+     *  each position. */
+    private static final long SIGNATURE_BASIS = 0xcbf29ce484222325L,
+        SIGNATURE_PRIME = 0x100000001b3L;
+}
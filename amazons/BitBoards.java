@@ -0,0 +1,153 @@
+package amazons;
+
+import static amazons.Board.SIZE;
+import static amazons.Board.BOARD_SIZE;
+
+/** Tables and operations for the bit-set representation of positions
+ *  used by Board.  A set of squares is held in two longs: bit I of the
+ *  low word stands for the square with index I (0 <= I < 64), and bit
+ *  I - 64 of the high word for the square with index I (64 <= I < 100).
+ *  Since the index of (COL, ROW) is COL * 10 + ROW, one step in a queen
+ *  direction is a fixed shift of the whole set, followed by a mask that
+ *  removes squares that wrapped around an edge.
+ *  @author Anastasia
+ */
+final class BitBoards {
+
+    /** Index offsets of one step in each direction, numbered as for
+     *  Square.queenMove (0 is north, 1 northeast, ..., 7 northwest). */
+    static final int[] STEP = { 1, 11, 10, 9, -1, -11, -10, -9 };
+
+    /** Row offsets of one step in each direction. */
+    private static final int[] ROW_STEP = { 1, 1, 0, -1, -1, -1, 0, 1 };
+
+    /** Return the low word of the set containing only square SQ. */
+    static long loBit(int sq) {
+        return sq < 64 ? 1L << sq : 0L;
+    }
+
+    /** Return the high word of the set containing only square SQ. */
+    static long hiBit(int sq) {
+        return sq >= 64 ? 1L << (sq - 64) : 0L;
+    }
+
+    /** Return true iff square SQ is in the set LO, HI. */
+    static boolean contains(long lo, long hi, int sq) {
+        if (sq < 64) {
+            return (lo & (1L << sq)) != 0;
+        }
+        return (hi & (1L << (sq - 64))) != 0;
+    }
+
+    /** Return the number of squares in the set LO, HI. */
+    static int count(long lo, long hi) {
+        return Long.bitCount(lo) + Long.bitCount(hi);
+    }
+
+    /** Return the smallest square index in the non-empty set LO, HI. */
+    static int first(long lo, long hi) {
+        if (lo != 0) {
+            return Long.numberOfTrailingZeros(lo);
+        }
+        return 64 + Long.numberOfTrailingZeros(hi);
+    }
+
+    /** Return the largest square index in the non-empty set LO, HI. */
+    static int last(long lo, long hi) {
+        if (hi != 0) {
+            return 127 - Long.numberOfLeadingZeros(hi);
+        }
+        return 63 - Long.numberOfLeadingZeros(lo);
+    }
+
+    /** Return the low word of the set LO, HI moved one step in
+     *  direction DIR. */
+    static long shiftLo(long lo, long hi, int dir) {
+        int n = STEP[dir];
+        long r;
+        if (n > 0) {
+            r = lo << n;
+        } else {
+            r = (lo >>> -n) | (hi << (64 + n));
+        }
+        return r & VALID_LO[dir];
+    }
+
+    /** Return the high word of the set LO, HI moved one step in
+     *  direction DIR. */
+    static long shiftHi(long lo, long hi, int dir) {
+        int n = STEP[dir];
+        long r;
+        if (n > 0) {
+            r = (hi << n) | (lo >>> (64 - n));
+        } else {
+            r = hi >>> -n;
+        }
+        return r & VALID_HI[dir];
+    }
+
+    /** Return true iff no square strictly after FROM up to and including
+     *  TO is in the set OCCLO, OCCHI, where TO is DIR from FROM. */
+    static boolean clearPath(int from, int to, int dir,
+                             long occLo, long occHi) {
+        long lo = RAY_LO[dir][from] ^ RAY_LO[dir][to];
+        long hi = RAY_HI[dir][from] ^ RAY_HI[dir][to];
+        return (lo & occLo) == 0 && (hi & occHi) == 0;
+    }
+
+    /** Store in OUT[0] and OUT[1] the low and high words of the set of
+     *  squares reachable by a queen move from SQ, where OCCLO, OCCHI is
+     *  the set of blocking squares.  SQ itself need not be in it. */
+    static void queenReach(int sq, long occLo, long occHi, long[] out) {
+        long lo, hi;
+        lo = hi = 0;
+        for (int dir = 0; dir < 8; dir += 1) {
+            long rLo = RAY_LO[dir][sq], rHi = RAY_HI[dir][sq];
+            long bLo = rLo & occLo, bHi = rHi & occHi;
+            if ((bLo | bHi) != 0) {
+                int b = STEP[dir] > 0 ? first(bLo, bHi) : last(bLo, bHi);
+                rLo &= ~(RAY_LO[dir][b] | loBit(b));
+                rHi &= ~(RAY_HI[dir][b] | hiBit(b));
+            }
+            lo |= rLo;
+            hi |= rHi;
+        }
+        out[0] = lo;
+        out[1] = hi;
+    }
+
+    /** Low words of the squares that may be the target of a one-step
+     *  shift in each direction. */
+    private static final long[] VALID_LO = new long[8];
+    /** High words of the squares that may be the target of a one-step
+     *  shift in each direction. */
+    private static final long[] VALID_HI = new long[8];
+
+    /** RAY_LO[DIR][SQ] and RAY_HI[DIR][SQ] are the low and high words of
+     *  the set of all squares in direction DIR from SQ, excluding SQ. */
+    private static final long[][]
+        RAY_LO = new long[8][BOARD_SIZE],
+        RAY_HI = new long[8][BOARD_SIZE];
+
+    static {
+        for (int dir = 0; dir < 8; dir += 1) {
+            int dRow = ROW_STEP[dir];
+            for (int sq = 0; sq < BOARD_SIZE; sq += 1) {
+                int row = sq % SIZE;
+                if ((dRow > 0 && row == 0) || (dRow < 0 && row == SIZE - 1)) {
+                    continue;
+                }
+                VALID_LO[dir] |= loBit(sq);
+                VALID_HI[dir] |= hiBit(sq);
+            }
+            for (int sq = 0; sq < BOARD_SIZE; sq += 1) {
+                Square s = Square.sq(sq);
+                for (int k = 1; s.queenMove(dir, k) != null; k += 1) {
+                    int t = s.queenMove(dir, k).index();
+                    RAY_LO[dir][sq] |= loBit(t);
+                    RAY_HI[dir][sq] |= hiBit(t);
+                }
+            }
+        }
+    }
+}
@@ -4,7 +4,10 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.Random;
 import static amazons.Piece.*;
+import static amazons.BitBoards.*;
+import static amazons.Square.SYMMETRIES;
 
 
 /** The state of an Amazons Game.
@@ -18,6 +21,10 @@ class Board {
     /** Size of the Board. */
     static final int BOARD_SIZE = SIZE * SIZE;
 
+    /** An upper bound on the number of legal moves in any position: four
+     *  queens, each with at most 35 destinations and 35 spear throws. */
+    static final int MAX_MOVES = 4 * 35 * 35;
+
     /** Initializes a game board with SIZE squares on a side in the
      *  initial position. */
     Board() {
@@ -40,16 +47,11 @@ class Board {
 
         this._whoseTurn = model._whoseTurn;
         this._winner = model._winner;
-        this._movesSoFar = new ArrayList<Move>();
-
-        for (Move m: _movesSoFar) {
-            _movesSoFar.add(Move.mv(m.from(), m.to(), m.spear()));
-        }
-
-        this._boardLayout = new Piece[BOARD_SIZE];
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            _boardLayout[i] = model._boardLayout[i];
-        }
+        this._numMoves = model._numMoves;
+        System.arraycopy(model._hashes, 0, _hashes, 0, _hashes.length);
+        System.arraycopy(model._movesSoFar, 0, _movesSoFar, 0, _numMoves);
+        System.arraycopy(model._bitsLo, 0, _bitsLo, 0, _bitsLo.length);
+        System.arraycopy(model._bitsHi, 0, _bitsHi, 0, _bitsHi.length);
     }
 
 
@@ -57,14 +59,12 @@ class Board {
     void init() {
 
 
-        _movesSoFar = new ArrayList<amazons.Move>();
-        _boardLayout = new amazons.Piece[BOARD_SIZE];
+        _numMoves = 0;
         _whoseTurn = WHITE;
-        _winner = EMPTY;
-
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            _boardLayout[i] = EMPTY;
-        }
+        _winner = null;
+        Arrays.fill(_hashes, 0);
+        Arrays.fill(_bitsLo, 0);
+        Arrays.fill(_bitsHi, 0);
 
         int w1 = (SIZE / 2) - 2;
         int w2 = SIZE * 3;
@@ -78,10 +78,10 @@ class Board {
         int[] startingWhite = {w1, w2, w3, w4};
         int[] startingBlack = {b1, b2, b3, b4};
         for (int sqW : startingWhite) {
-            _boardLayout[sqW] = WHITE;
+            put(WHITE, sqW);
         }
         for (int sqB : startingBlack) {
-            _boardLayout[sqB] = BLACK;
+            put(BLACK, sqB);
         }
     }
 
@@ -93,18 +93,105 @@ class Board {
     /** Return the number of moves (that have not been undone) for this
      *  board. */
     int numMoves() {
-        return _movesSoFar.size();
+        return _numMoves;
+    }
+
+    /** Return the number of empty squares. */
+    int numEmpty() {
+        return BOARD_SIZE - count(_bitsLo[OCCUPIED], _bitsHi[OCCUPIED]);
+    }
+
+    /** Return the Zobrist key of the current position: the XOR of a
+     *  fixed random key for each occupied square and its contents, and
+     *  of a key for Black to move.  It is kept up to date by put,
+     *  makeMove, and undo, so that equal positions reached by different
+     *  move orders have equal keys. */
+    long hash() {
+        return _hashes[0];
+    }
+
+    /** Return the Zobrist key (see hash) of the image of the current
+     *  position under symmetry SYM (see Square.transform).  The keys of
+     *  all the images are kept up to date along with hash. */
+    long hash(int sym) {
+        return _hashes[sym];
+    }
+
+    /** Return the symmetry whose image of the current position has the
+     *  least key (the first such, if several do). */
+    int canonicalSymmetry() {
+        int best = 0;
+        for (int sym = 1; sym < SYMMETRIES; sym += 1) {
+            if (_hashes[sym] < _hashes[best]) {
+                best = sym;
+            }
+        }
+        return best;
+    }
+
+    /** Return the canonical key of the current position: the least of
+     *  the keys of its images under the symmetries of the board, which
+     *  is the same for all positions that are rotations or reflections
+     *  of each other.  Caches keyed by it can use what they learn about
+     *  a position for all of its images, mapping moves from and to the
+     *  image of canonicalSymmetry. */
+    long canonicalHash() {
+        return _hashes[canonicalSymmetry()];
     }
 
-    /** Return the winner in the current position, or null if the game is
-     *  not yet finished. */
+    /** Return the key that hash includes for piece P on the square with
+     *  index SQ (0 if P is EMPTY). */
+    static long squareKey(Piece p, int sq) {
+        return ZOBRIST[p.ordinal()][sq];
+    }
+
+    /** Return the key that hash includes when Black is to move. */
+    static long blackToMoveKey() {
+        return BLACK_TO_MOVE;
+    }
+
+    /** Return the winner in the current position, or EMPTY if the game is
+     *  not yet finished.  The winner is computed only when asked for,
+     *  and then cached until the board changes. */
     Piece winner() {
+        if (_winner == null) {
+            _winner = hasMove(_whoseTurn) ? EMPTY : _whoseTurn.opponent();
+        }
         return _winner;
     }
 
+    /** Return true iff SIDE has a legal move on the current board.  A
+     *  queen can move iff it has an empty neighbor, since it may then
+     *  step there and throw its spear back to where it stood. */
+    boolean hasMove(Piece side) {
+        long qLo = _bitsLo[side.ordinal()], qHi = _bitsHi[side.ordinal()];
+        long freeLo = ~_bitsLo[OCCUPIED], freeHi = ~_bitsHi[OCCUPIED];
+        for (int dir = 0; dir < 8; dir += 1) {
+            if ((shiftLo(qLo, qHi, dir) & freeLo) != 0
+                || (shiftHi(qLo, qHi, dir) & freeHi) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /** Return the contents the square at S. */
     final Piece get(Square s) {
-        return _boardLayout[s.index()];
+        return get(s.index());
+    }
+
+    /** Return the contents of the square with index SQ. */
+    final Piece get(int sq) {
+        long lo = loBit(sq), hi = hiBit(sq);
+        if ((_bitsLo[OCCUPIED] & lo) == 0 && (_bitsHi[OCCUPIED] & hi) == 0) {
+            return EMPTY;
+        }
+        for (int p = WHITE.ordinal(); p < SPEAR.ordinal(); p += 1) {
+            if ((_bitsLo[p] & lo) != 0 || (_bitsHi[p] & hi) != 0) {
+                return PIECES[p];
+            }
+        }
+        return SPEAR;
     }
 
     /** Return the contents of the square at (COL, ROW), where
@@ -123,7 +210,25 @@ class Board {
     /** Set square S to P. */
     final void put(Piece p, Square s) {
 
-        _boardLayout[s.index()] = p;
+        put(p, s.index());
+    }
+
+    /** Set the square with index SQ to P. */
+    final void put(Piece p, int sq) {
+        _winner = null;
+        toggleKeys(get(sq).ordinal(), sq);
+        toggleKeys(p.ordinal(), sq);
+        long lo = loBit(sq), hi = hiBit(sq);
+        for (int k = 0; k < _bitsLo.length; k += 1) {
+            _bitsLo[k] &= ~lo;
+            _bitsHi[k] &= ~hi;
+        }
+        if (p != EMPTY) {
+            _bitsLo[p.ordinal()] |= lo;
+            _bitsHi[p.ordinal()] |= hi;
+            _bitsLo[OCCUPIED] |= lo;
+            _bitsHi[OCCUPIED] |= hi;
+        }
     }
 
     /** Set square (COL, ROW) to P. */
@@ -143,32 +248,21 @@ class Board {
      *  squares along it, other than FROM and ASEMPTY, must be
      *  empty. ASEMPTY may be null, in which case it has no effect. */
     boolean isUnblockedMove(Square from, Square to, Square asEmpty) {
-        int direction = from.direction(to);
-        if (direction == -1) {
+        if (!from.isQueenMove(to)) {
             return false;
         }
-
-        int steps = 0;
-        Square check = null;
-
-        while (check != to) {
-            check = from.queenMove(direction, steps + 1);
-            steps += 1;
-            if (check == null) {
-                return false;
-            } else if (check == asEmpty) {
-                continue;
-            } else if (_boardLayout[check.index()] != EMPTY) {
-                return false;
-            }
+        long occLo = _bitsLo[OCCUPIED], occHi = _bitsHi[OCCUPIED];
+        if (asEmpty != null) {
+            occLo &= ~loBit(asEmpty.index());
+            occHi &= ~hiBit(asEmpty.index());
         }
-
-        return true;
+        return clearPath(from.index(), to.index(), from.direction(to),
+                         occLo, occHi);
     }
 
     /** Return true iff FROM is a valid starting square for a move. */
     boolean isLegal(Square from) {
-        return _boardLayout[from.index()] == _whoseTurn;
+        return get(from) == _whoseTurn;
     }
 
     /** Return true iff FROM-TO is a valid first part of move, ignoring
@@ -201,31 +295,42 @@ class Board {
 
     /** Move according to MOVE, assuming it is a legal move. */
     void makeMove(Move move) {
-        _movesSoFar.add(move);
-        _boardLayout[move.from().index()] = EMPTY;
-        _boardLayout[move.to().index()] = _whoseTurn;
-        _boardLayout[move.spear().index()] = SPEAR;
+        makeMove(move.code());
+    }
+
+    /** Make the move whose code (see Move.code) is CODE, assuming it is
+     *  a legal move. */
+    void makeMove(int code) {
+        int from = Move.codeFrom(code), to = Move.codeTo(code),
+            spear = Move.codeSpear(code);
+        long fromLo = loBit(from), toLo = loBit(to), spLo = loBit(spear);
+        long fromHi = hiBit(from), toHi = hiBit(to), spHi = hiBit(spear);
+        int side = _whoseTurn.ordinal();
+
+        _movesSoFar[_numMoves] = code;
+        _numMoves += 1;
+        _bitsLo[side] ^= fromLo | toLo;
+        _bitsHi[side] ^= fromHi | toHi;
+        _bitsLo[SPEAR.ordinal()] |= spLo;
+        _bitsHi[SPEAR.ordinal()] |= spHi;
+        _bitsLo[OCCUPIED] = (_bitsLo[OCCUPIED] & ~fromLo) | toLo | spLo;
+        _bitsHi[OCCUPIED] = (_bitsHi[OCCUPIED] & ~fromHi) | toHi | spHi;
+        toggleKeys(side, from, to, spear);
 
         if (_whoseTurn == BLACK) {
             _whoseTurn = WHITE;
         } else {
             _whoseTurn = BLACK;
         }
-        LegalMoveIterator i = new LegalMoveIterator(_whoseTurn);
-        if (!i.hasNext()) {
-            if (_whoseTurn == BLACK) {
-                System.out.println(_whoseTurn);
-                _winner = WHITE;
-            } else {
-                _winner = BLACK;
-            }
-        }
+        _winner = null;
     }
 
-    /** Undo one move.  Has no effect on the initial board. */
+    /** Undo one move.  Has no effect on the initial board.  Since the
+     *  side to move before a legal move always has a move, the game was
+     *  not over before it, so the winner is cleared. */
     void undo() {
 
-        if (_movesSoFar.size() == 0) {
+        if (_numMoves == 0) {
             return;
         }
 
@@ -234,13 +339,68 @@ class Board {
         } else {
             _whoseTurn = WHITE;
         }
+        _winner = EMPTY;
 
-        Move mv = _movesSoFar.get(_movesSoFar.size() - 1);
-        _boardLayout[mv.from().index()] = _whoseTurn;
-        _boardLayout[mv.spear().index()] = EMPTY;
-        _boardLayout[mv.to().index()] = EMPTY;
-        int last = _movesSoFar.size() - 1;
-        _movesSoFar.remove(last);
+        _numMoves -= 1;
+        int code = _movesSoFar[_numMoves];
+        int from = Move.codeFrom(code), to = Move.codeTo(code),
+            spear = Move.codeSpear(code);
+        long fromLo = loBit(from), toLo = loBit(to), spLo = loBit(spear);
+        long fromHi = hiBit(from), toHi = hiBit(to), spHi = hiBit(spear);
+        int side = _whoseTurn.ordinal();
+
+        _bitsLo[SPEAR.ordinal()] &= ~spLo;
+        _bitsHi[SPEAR.ordinal()] &= ~spHi;
+        _bitsLo[side] ^= fromLo | toLo;
+        _bitsHi[side] ^= fromHi | toHi;
+        _bitsLo[OCCUPIED] = (_bitsLo[OCCUPIED] & ~(toLo | spLo)) | fromLo;
+        _bitsHi[OCCUPIED] = (_bitsHi[OCCUPIED] & ~(toHi | spHi)) | fromHi;
+        toggleKeys(side, from, to, spear);
+    }
+
+    /** Move the queen on the square with index FROM to the empty square
+     *  with index TO, without throwing a spear, recording a move, or
+     *  changing whose turn it is.  moveQueen(TO, FROM) undoes it.  This
+     *  allows a search to look at the position between the two parts of
+     *  a move; the queen must be moved back before the next makeMove or
+     *  undo. */
+    void moveQueen(int from, int to) {
+        long lo = loBit(from) | loBit(to), hi = hiBit(from) | hiBit(to);
+        int side = ((_bitsLo[WHITE.ordinal()] & loBit(from))
+                    | (_bitsHi[WHITE.ordinal()] & hiBit(from))) != 0
+            ? WHITE.ordinal() : BLACK.ordinal();
+        _bitsLo[side] ^= lo;
+        _bitsHi[side] ^= hi;
+        _bitsLo[OCCUPIED] ^= lo;
+        _bitsHi[OCCUPIED] ^= hi;
+        int a = (side * BOARD_SIZE + from) * SYMMETRIES,
+            b = (side * BOARD_SIZE + to) * SYMMETRIES;
+        for (int sym = 0; sym < SYMMETRIES; sym += 1) {
+            _hashes[sym] ^= SYM_ZOBRIST[a + sym] ^ SYM_ZOBRIST[b + sym];
+        }
+        _winner = null;
+    }
+
+    /** Toggle the keys of piece number P on the square with index SQ in
+     *  _hashes. */
+    private void toggleKeys(int p, int sq) {
+        int a = (p * BOARD_SIZE + sq) * SYMMETRIES;
+        for (int sym = 0; sym < SYMMETRIES; sym += 1) {
+            _hashes[sym] ^= SYM_ZOBRIST[a + sym];
+        }
+    }
+
+    /** Toggle in _hashes the keys of a move by piece number SIDE from
+     *  the square with index FROM to TO, throwing a spear to SPEAR, and
+     *  the key for Black to move. */
+    private void toggleKeys(int side, int from, int to, int spear) {
+        int a = (side * BOARD_SIZE + from) * SYMMETRIES,
+            b = (side * BOARD_SIZE + to) * SYMMETRIES,
+            c = (SPEAR.ordinal() * BOARD_SIZE + spear) * SYMMETRIES;
+        for (int sym = 0; sym < SYMMETRIES; sym += 1) {
+            _hashes[sym] ^= SYM_ZOBRIST[a + sym] ^ SYM_ZOBRIST[b + sym]
+                ^ SYM_ZOBRIST[c + sym] ^ BLACK_TO_MOVE;
+        }
     }
 
     /** Return an Iterator over the Squares that are reachable by an
@@ -265,63 +425,140 @@ class Board {
         return new LegalMoveIterator(side);
     }
 
+    /** Store the codes (see Move.code) of all legal moves on the current
+     *  board in BUFFER, starting at index 0, and return their number.
+     *  BUFFER must have room for MAX_MOVES codes.  Unlike legalMoves,
+     *  creates no objects. */
+    int generateMoves(int[] buffer) {
+        return generateMoves(_whoseTurn, buffer);
+    }
+
+    /** Store the codes of all legal moves for SIDE (regardless of whose
+     *  turn it is) in BUFFER, as for generateMoves(BUFFER), and return
+     *  their number. */
+    int generateMoves(Piece side, int[] buffer) {
+        int n = 0;
+        long occLo = _bitsLo[OCCUPIED], occHi = _bitsHi[OCCUPIED];
+        long qLo = _bitsLo[side.ordinal()], qHi = _bitsHi[side.ordinal()];
+        while ((qLo | qHi) != 0) {
+            int from = first(qLo, qHi);
+            qLo &= ~loBit(from);
+            qHi &= ~hiBit(from);
+            long restLo = occLo & ~loBit(from), restHi = occHi & ~hiBit(from);
+            queenReach(from, occLo, occHi, _reach);
+            long toLo = _reach[0], toHi = _reach[1];
+            while ((toLo | toHi) != 0) {
+                int to = first(toLo, toHi);
+                toLo &= ~loBit(to);
+                toHi &= ~hiBit(to);
+                queenReach(to, restLo, restHi, _reach);
+                long spLo = _reach[0], spHi = _reach[1];
+                while ((spLo | spHi) != 0) {
+                    int spear = first(spLo, spHi);
+                    spLo &= ~loBit(spear);
+                    spHi &= ~hiBit(spear);
+                    buffer[n] = Move.code(from, to, spear);
+                    n += 1;
+                }
+            }
+        }
+        return n;
+    }
+
+    /** Store the codes of the queen moves (the first parts of the legal
+     *  moves) for SIDE in BUFFER, starting at index 0, and return their
+     *  number.  The spear of each code is 0 and has no meaning. */
+    int generateQueenMoves(Piece side, int[] buffer) {
+        int n = 0;
+        long qLo = _bitsLo[side.ordinal()], qHi = _bitsHi[side.ordinal()];
+        while ((qLo | qHi) != 0) {
+            int from = first(qLo, qHi);
+            qLo &= ~loBit(from);
+            qHi &= ~hiBit(from);
+            queenReach(from, _bitsLo[OCCUPIED], _bitsHi[OCCUPIED], _reach);
+            long toLo = _reach[0], toHi = _reach[1];
+            while ((toLo | toHi) != 0) {
+                int to = first(toLo, toHi);
+                toLo &= ~loBit(to);
+                toHi &= ~hiBit(to);
+                buffer[n] = Move.code(from, to, 0);
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** Store in BUFFER, starting at index 0, the indices of the squares
+     *  reachable by an unblocked queen move from the square with index
+     *  FROM, treating the square with index ASEMPTY (if not negative) as
+     *  empty, as for reachableFrom(Square, Square), and return their
+     *  number.  Creates no objects. */
+    int reachableFrom(int from, int asEmpty, int[] buffer) {
+        reachFrom(from, asEmpty);
+        long lo = _reach[0], hi = _reach[1];
+        int n = 0;
+        while ((lo | hi) != 0) {
+            int sq = first(lo, hi);
+            lo &= ~loBit(sq);
+            hi &= ~hiBit(sq);
+            buffer[n] = sq;
+            n += 1;
+        }
+        return n;
+    }
+
+    /** Return the number of squares that reachableFrom(FROM, ASEMPTY,
+     *  ...) would deliver. */
+    int numReachable(int from, int asEmpty) {
+        reachFrom(from, asEmpty);
+        return count(_reach[0], _reach[1]);
+    }
+
+    /** Set _reach to the squares reachable by queen move from the square
+     *  with index FROM, treating the square with index ASEMPTY (if not
+     *  negative) as empty. */
+    private void reachFrom(int from, int asEmpty) {
+        long occLo = _bitsLo[OCCUPIED], occHi = _bitsHi[OCCUPIED];
+        if (asEmpty >= 0) {
+            occLo &= ~loBit(asEmpty);
+            occHi &= ~hiBit(asEmpty);
+        }
+        queenReach(from, occLo, occHi, _reach);
+    }
+
     /** An iterator used by reachableFrom. */
     private class ReachableFromIterator implements Iterator<Square> {
 
         /** Iterator of all squares reachable by queen move from FROM,
          *  treating ASEMPTY as empty. */
         ReachableFromIterator(Square from, Square asEmpty) {
-            _from = from;
-            _dir = -1;
-            _steps = 0;
-            _asEmpty = asEmpty;
-            toNext();
+            long occLo = _bitsLo[OCCUPIED], occHi = _bitsHi[OCCUPIED];
+            if (asEmpty != null) {
+                occLo &= ~loBit(asEmpty.index());
+                occHi &= ~hiBit(asEmpty.index());
+            }
+            queenReach(from.index(), occLo, occHi, _reach);
         }
 
         @Override
         public boolean hasNext() {
-            return _dir < 8;
+            return (_reach[0] | _reach[1]) != 0;
         }
 
         @Override
         public Square next() {
             Square next = null;
             if (hasNext()) {
-                next = _from.queenMove(_dir, _steps);
-                toNext();
+                int sq = first(_reach[0], _reach[1]);
+                _reach[0] &= ~loBit(sq);
+                _reach[1] &= ~hiBit(sq);
+                next = Square.sq(sq);
             }
             return next;
         }
 
-        /** Advance _dir and _steps, so that the next valid Square is
-         *  _steps steps in direction _dir from _from. */
-        private void toNext() {
-
-            _steps += 1;
-            Square to = _from.queenMove(_dir, _steps);
-            while (_dir < 8
-                    && (to == null
-                    || !isUnblockedMove(_from, to, _asEmpty))) {
-
-                _steps = 1;
-                to = _from.queenMove(_dir + 1, 1);
-                boolean goodNext = to != null && to != _asEmpty;
-
-                if (goodNext && _boardLayout[to.index()] != EMPTY) {
-                    to = null;
-                }
-                _dir++;
-            }
-        }
-
-        /** Starting square. */
-        private Square _from;
-        /** Current direction. */
-        private int _dir;
-        /** Current distance. */
-        private int _steps;
-        /** Square treated as empty. */
-        private Square _asEmpty;
+        /** Low and high words of the squares not yet delivered. */
+        private final long[] _reach = new long[2];
     }
 
     /** An iterator used by legalMoves. */
@@ -329,10 +566,10 @@ class Board {
 
         /** All legal moves for SIDE (WHITE or BLACK). */
         LegalMoveIterator(amazons.Piece side) {
-            _startingSquares = amazons.Square.iterator();
+            _queensLo = _bitsLo[side.ordinal()];
+            _queensHi = _bitsHi[side.ordinal()];
             _spearThrows = NO_SQS;
             _pieceMoves = NO_SQS;
-            _fromPiece = side;
             _nextSquare = _start = null;
             toNext();
         }
@@ -359,16 +596,13 @@ class Board {
                     _nextSquare = _pieceMoves.next();
                     Square n = _nextSquare;
                     _spearThrows = new ReachableFromIterator(n, _start);
-                } else if (_startingSquares.hasNext()) {
-                    while (_startingSquares.hasNext()) {
-                        _start = _startingSquares.next();
-                        if (_boardLayout[_start.index()] == _fromPiece) {
-                            Square st = _start;
-                            _pieceMoves = new ReachableFromIterator(st, null);
-                            _spearThrows = NO_SQS;
-                            break;
-                        }
-                    }
+                } else if ((_queensLo | _queensHi) != 0) {
+                    int sq = first(_queensLo, _queensHi);
+                    _queensLo &= ~loBit(sq);
+                    _queensHi &= ~hiBit(sq);
+                    _start = Square.sq(sq);
+                    _pieceMoves = new ReachableFromIterator(_start, null);
+                    _spearThrows = NO_SQS;
                 } else {
                     _start = null;
                     break;
@@ -376,12 +610,10 @@ class Board {
             }
         }
 
-        /** Color of side whose moves we are iterating. */
-        private Piece _fromPiece;
         /** Current starting square. */
         private Square _start;
-        /** Remaining starting squares to consider. */
-        private Iterator<Square> _startingSquares;
+        /** Low and high words of the remaining queens to consider. */
+        private long _queensLo, _queensHi;
         /** Current piece's new position. */
         private Square _nextSquare;
         /** Remaining moves from _start to consider. */
@@ -416,96 +648,107 @@ class Board {
     /** Piece whose turn it is (BLACK or WHITE). */
     private Piece _whoseTurn;
 
-    /** Cached value of winner on this board, or EMPTY if it has not been
-     *  computed. */
+    /** Cached value of winner on this board (EMPTY if the game is not
+     *  over), or null if it has not been computed. */
     private Piece _winner;
 
-    /** Current board. */
-    private Piece[] _boardLayout;
-
-    /** Moves made so far. */
-    private ArrayList<Move> _movesSoFar;
-
-    /** Returns moves made so far. */
-    public ArrayList<Move> moves() {
-        return _movesSoFar;
-    }
-
-    /** @return score integer.*/
-    public int boardScore() {
-        int[] blackPieces = new int[4], whitePieces = new int[4];
-        int boardSize = SIZE * SIZE;
-
-        for (int p = 0, wc = 0, bc = 0; p < boardSize; p++) {
-            if (_boardLayout[p].equals(Piece.WHITE)) {
-                whitePieces[wc] = p;
-                wc++;
-            } else if (_boardLayout[p].equals(Piece.BLACK)) {
-                blackPieces[bc] = p;
-                bc++;
+    /** Index in _bitsLo and _bitsHi of the set of occupied squares. */
+    private static final int OCCUPIED = EMPTY.ordinal();
+
+    /** All Pieces, indexed by ordinal. */
+    private static final Piece[] PIECES = Piece.values();
+
+    /** ZOBRIST[P][SQ] is the hash key of piece P on the square with
+     *  index SQ.  The keys for EMPTY are 0. */
+    private static final long[][] ZOBRIST =
+        new long[PIECES.length][BOARD_SIZE];
+
+    /** The hash key for Black to move. */
+    private static final long BLACK_TO_MOVE;
+
+    /** The hash keys of each piece on each square in the images of the
+     *  board under each symmetry: the key of piece P on the square with
+     *  index SQ under symmetry SYM is entry (P * BOARD_SIZE + SQ) *
+     *  SYMMETRIES + SYM, so that the keys for one piece and square are
+     *  adjacent. */
+    private static final long[] SYM_ZOBRIST =
+        new long[PIECES.length * BOARD_SIZE * SYMMETRIES];
+
+    static {
+        Random keys = new Random(0x5eed_a3a2_0115L);
+        for (int p = WHITE.ordinal(); p < PIECES.length; p += 1) {
+            for (int sq = 0; sq < BOARD_SIZE; sq += 1) {
+                ZOBRIST[p][sq] = keys.nextLong();
             }
         }
-
-        int[] whiteSpears = new int[boardSize];
-        int[] blackSpears = new int[boardSize];
-        Arrays.fill(whiteSpears, 0);
-        Arrays.fill(blackSpears, 0);
-        for (int i = 0; i < boardSize; i++) {
-            if (_boardLayout[i].equals(Piece.EMPTY)) {
-                continue;
-            } else {
-                whiteSpears[i] = -1;
-                blackSpears[i] = -1;
+        BLACK_TO_MOVE = keys.nextLong();
+        for (int p = 0; p < PIECES.length; p += 1) {
+            for (int sq = 0; sq < BOARD_SIZE; sq += 1) {
+                for (int sym = 0; sym < SYMMETRIES; sym += 1) {
+                    SYM_ZOBRIST[(p * BOARD_SIZE + sq) * SYMMETRIES + sym] =
+                        ZOBRIST[p][Square.transform(sym, sq)];
+                }
             }
         }
+    }
 
-        for (int placement: whitePieces) {
-            Square queenSquare = Square.sq(placement);
-            claimSquare(queenSquare, 1, whiteSpears);
-        }
+    /** Zobrist keys of the images of the current position under each
+     *  symmetry (see hash(int)); _hashes[0] is that of the position
+     *  itself. */
+    private final long[] _hashes = new long[SYMMETRIES];
 
-        for (int placement: blackPieces) {
-            Square queenSquare = Square.sq(placement);
-            claimSquare(queenSquare, 1, blackSpears);
-        }
+    /** Current board, as sets of squares indexed by Piece ordinal: the
+     *  entries for WHITE, BLACK, and SPEAR hold the squares containing
+     *  that piece, and the entry for EMPTY (OCCUPIED) holds their union.
+     *  _bitsLo holds the low words of the sets and _bitsHi the high
+     *  words (see BitBoards). */
+    private final long[] _bitsLo = new long[PIECES.length],
+        _bitsHi = new long[PIECES.length];
 
-        boolean searchWhite = true, searchBlack = true;
-        int f = 1;
+    /** Codes (see Move.code) of the moves made so far.  Every move
+     *  places a spear, so there can be fewer than BOARD_SIZE of them. */
+    private final int[] _movesSoFar = new int[BOARD_SIZE];
 
-        while (searchWhite || searchBlack) {
-            boolean wS = searchWhite;
-            boolean bS = searchBlack;
-            searchWhite = false;
-            searchBlack = false;
-            for (int i2 = 0; i2 < boardSize; i2++) {
-                if (whiteSpears[i2] == f && wS) {
-                    boolean b1 = claimSquare(Square.sq(i2), f + 1, whiteSpears);
-                    searchWhite = searchWhite | b1;
-                }
-                if (blackSpears[i2] == f && bS) {
-                    boolean b2 = claimSquare(Square.sq(i2), f + 1, blackSpears);
-                    searchBlack = searchBlack | b2;
-                }
-            }
+    /** Number of moves in _movesSoFar. */
+    private int _numMoves;
+
+    /** Returns moves made so far. */
+    public ArrayList<Move> moves() {
+        ArrayList<Move> result = new ArrayList<>(_numMoves);
+        for (int i = 0; i < _numMoves; i += 1) {
+            result.add(Move.mv(_movesSoFar[i]));
         }
-        return score(whiteSpears, blackSpears);
+        return result;
     }
 
-    /** @param player1 is white
-     * @param player2 is black.
-     * @return score integer */
-    private int score(int[] player1, int[] player2) {
-        int gain = 0;
-        for (int i = 0; i < BOARD_SIZE; i++) {
-            if (player1[i] > 0 && (player1[i] < player2[i])) {
-                gain++;
-            } else if (player2[i] > 0 && (player1[i] > player2[i])) {
-                gain -= 1;
-            }
-        }
-        return gain;
+    /** Return the territory score of this position: the number of
+     *  empty squares a white queen reaches in one move that black needs
+     *  two moves to reach, less the number for which the reverse holds.
+     *  Squares that only one side can reach within two moves do not
+     *  count. */
+    public int boardScore() {
+        computeTerritory(_territory, false);
+        return _territory.score();
     }
 
+    /** Compute the distance layers of TERRITORY for this position,
+     *  fully iff FULL (see Territory.compute). */
+    void computeTerritory(Territory territory, boolean full) {
+        territory.compute(_bitsLo[OCCUPIED], _bitsHi[OCCUPIED],
+                          _bitsLo[WHITE.ordinal()], _bitsHi[WHITE.ordinal()],
+                          _bitsLo[BLACK.ordinal()], _bitsHi[BLACK.ordinal()],
+                          full);
+    }
+
+    /** Find the regions of this position, storing them in REGIONS. */
+    void computeRegions(Regions regions) {
+        regions.compute(_bitsLo[SPEAR.ordinal()], _bitsHi[SPEAR.ordinal()],
+                        _bitsLo[WHITE.ordinal()], _bitsHi[WHITE.ordinal()],
+                        _bitsLo[BLACK.ordinal()], _bitsHi[BLACK.ordinal()]);
+    }
+
+    /** Distance maps used by boardScore. */
+    private final Territory _territory = new Territory();
 
     /** Squares that can be reached in 1 move by throwing a spear.  */
     private int _squareOwnership;
@@ -516,23 +759,8 @@ class Board {
         return _squareOwnership;
     }
 
-    /** Claims the square by a Spear
-     * AND @return fills the mapSpears of WhiteSpears or BlackSpears.
-     * @param from is starting square
-     * @param value is a flag
-     * @param mapSpears is map of scores for white ore black player. */
-    private boolean claimSquare(Square from, int value, int[] mapSpears) {
-        ReachableFromIterator allPlaces = new ReachableFromIterator(from, null);
-        boolean owned = false;
-        while (allPlaces.hasNext()) {
-            int placeIndex = allPlaces.next().index();
-            if (mapSpears[placeIndex] == 0) {
-                mapSpears[placeIndex] = value;
-                owned = true;
-            }
-        }
-        return  owned;
-    }
+    /** Scratch space for the low and high words of a reachable set. */
+    private final long[] _reach = new long[2];
 
 
 }
@@ -0,0 +1,161 @@
+package amazons;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import static amazons.Piece.*;
+
+/** The program that builds an opening book (see OpeningBook) by long
+ *  searches.  Starting from the initial position, it searches each
+ *  position for the time allowed and records the move found.  It then
+ *  goes on to the positions after that move and after the WIDTH - 1
+ *  other moves that look best by the static evaluation, taken once per
+ *  symmetry class, so that the book also covers the replies an opponent
+ *  is likely to choose.  This continues until the positions are PLIES
+ *  moves deep.
+ *  @author Anastasia
+ */
+public class BookBuilder {
+
+    /** Build a book from ARGS: the name of the book file, and
+     *  optionally the number of plies (default 4), the width (default
+     *  3), and the seconds of search per position (default 10). */
+    public static void main(String... args) {
+        if (args.length < 1 || args.length > 4) {
+            System.err.println("Usage: java amazons.BookBuilder FILE"
+                               + " [PLIES [WIDTH [SECS]]]");
+            System.exit(1);
+        }
+        int plies = args.length > 1 ? Integer.parseInt(args[1]) : 4,
+            width = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        long millis = args.length > 3 ? Long.parseLong(args[3]) * 1000
+            : 10000;
+        BookBuilder builder = new BookBuilder(plies, width, millis);
+        builder.build();
+        try {
+            builder.write(args[0]);
+        } catch (IOException excp) {
+            System.err.printf("Could not write book: %s%n",
+                              excp.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /** A builder for a book PLIES moves deep, following WIDTH moves from
+     *  each position, and searching each for MILLIS milliseconds. */
+    BookBuilder(int plies, int width, long millis) {
+        _plies = plies;
+        _width = width;
+        _millis = millis;
+    }
+
+    /** Search all the positions of the book. */
+    void build() {
+        ArrayDeque<Board> queue = new ArrayDeque<>();
+        queue.add(new Board());
+        Set<Long> queued = new HashSet<>();
+        while (!queue.isEmpty()) {
+            Board board = queue.remove();
+            int sym = board.canonicalSymmetry();
+            int best = search(board);
+            _book.put(board.hash(sym), Move.transformCode(sym, best));
+            System.err.printf("%d/%d: %s%n", _book.size(),
+                              _book.size() + queue.size(), Move.mv(best));
+            if (board.numMoves() + 1 < _plies) {
+                for (int move : candidates(board, best)) {
+                    Board next = new Board(board);
+                    next.makeMove(move);
+                    long key = next.canonicalHash();
+                    if (next.winner() == EMPTY && queued.add(key)) {
+                        queue.add(next);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Write the book built to the file named FILENAME. */
+    void write(String fileName) throws IOException {
+        long[] keys = new long[_book.size()];
+        int[] moves = new int[_book.size()];
+        int n = 0;
+        for (Map.Entry<Long, Integer> entry : _book.entrySet()) {
+            keys[n] = entry.getKey();
+            moves[n] = entry.getValue();
+            n += 1;
+        }
+        OpeningBook.write(fileName, keys, moves, n);
+    }
+
+    /** Return the code of the best move from BOARD found in the time
+     *  allowed. */
+    private int search(Board board) {
+        long start = System.currentTimeMillis();
+        _table.newSearch();
+        _search.deepen(new Board(board), 0, Search.MAX_DEPTH,
+                       start + _millis, start + _millis / 2);
+        return _search.bestMove();
+    }
+
+    /** Return the codes of the moves from BOARD to follow: BEST and the
+     *  best of the others by the static evaluation, one per symmetry
+     *  class of the resulting positions, up to _width in all. */
+    private int[] candidates(Board board, int best) {
+        int[] moves = new int[Board.MAX_MOVES];
+        int n = board.generateMoves(moves);
+        long[] ranked = new long[n];
+        int sense = board.turn() == WHITE ? 1 : -1;
+        for (int i = 0; i < n; i += 1) {
+            board.makeMove(moves[i]);
+            int value = moves[i] == best ? Integer.MAX_VALUE
+                : sense * _evaluator.evaluate(board);
+            board.undo();
+            ranked[i] = ((long) -value << 32) | (moves[i] & 0xffffffffL);
+        }
+        Arrays.sort(ranked);
+        int[] result = new int[_width];
+        Set<Long> seen = new HashSet<>();
+        int k = 0;
+        for (int i = 0; i < n && k < _width; i += 1) {
+            int move = (int) ranked[i];
+            board.makeMove(move);
+            long key = board.canonicalHash();
+            board.undo();
+            if (seen.add(key)) {
+                result[k] = move;
+                k += 1;
+            }
+        }
+        return Arrays.copyOf(result, k);
+    }
+
+    /** Depth of the book, in moves. */
+    private final int _plies;
+
+    /** Number of moves followed from each position. */
+    private final int _width;
+
+    /** Milliseconds of search per position. */
+    private final long _millis;
+
+    /** The entries of the book: canonical keys and moves. */
+    private final Map<Long, Integer> _book = new HashMap<>();
+
+    /** The evaluation used to rank moves. */
+    private final Evaluator _evaluator = new Evaluator();
+
+    /** The table of my searches. */
+    private final TranspositionTable _table =
+        new TranspositionTable(AI.DEFAULT_TABLE_SIZE);
+
+    /** My search. */
+    private final Search _search =
+        new Search(_table, new EvalCache(AI.DEFAULT_EVAL_CACHE_SIZE),
+                   new Evaluator(), false, 0, AI.DEFAULT_REDUCE_AFTER,
+                   AI.DEFAULT_REDUCE_MORE_AFTER);
+}
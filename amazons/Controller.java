@@ -71,6 +71,8 @@ final class Controller {
                 _winner = _board.winner();
             }
         }
+        _white.stopThinking();
+        _black.stopThinking();
         if (_logFile != null) {
             _logFile.close();
         }
@@ -151,6 +153,7 @@ final class Controller {
         new Command("quit$", this::doQuit),
         new Command("seed\\s+(\\d+)$", this::doSeed),
         new Command("dump$", this::doDump),
+        new Command("bench(?:\\s+(\\d+)(?:\\s+(\\d+))?)?$", this::doBench),
         new Command("auto\\s+(black|white)$", this::autoDo),
         new Command("manual\\s+(black|white)$", this::manualDo)
     };
@@ -195,6 +198,8 @@ final class Controller {
 
     /** Command "new". */
     private void doNew(Matcher unused) {
+        _white.stopThinking();
+        _black.stopThinking();
         _board.init();
         _winner = null;
     }
@@ -218,19 +223,54 @@ final class Controller {
         System.out.printf("===%n%s===%n", _board);
     }
 
+    /** Command "bench [DEPTH [NODES]]", where DEPTH and NODES, if
+     *  present, are groups 1 and 2 of MAT. */
+    private void doBench(Matcher mat) {
+        try {
+            int depth = mat.group(1) == null ? Bench.DEFAULT_DEPTH
+                : Integer.parseInt(mat.group(1));
+            long nodes = mat.group(2) == null ? 0
+                : Long.parseLong(mat.group(2));
+            bench(depth, nodes);
+        } catch (NumberFormatException excp) {
+            throw error("number too large");
+        }
+    }
+
+    /** Search the positions of the bench suite (see Bench) to DEPTH
+     *  levels (at most Search.MAX_DEPTH), or until more than NODES
+     *  nodes (0 for no limit) have been visited in each, with an AI
+     *  made from my automated player template, if it is one, or with a
+     *  default AI otherwise, and print the results on the standard
+     *  output.  The AI searches with one thread, so that its searches
+     *  are repeatable.  The players of the current game are
+     *  unaffected. */
+    void bench(int depth, long nodes) {
+        AI ai = _autoPlayerTemplate instanceof AI
+            ? (AI) _autoPlayerTemplate.create(WHITE, this) : new AI();
+        ai.setThreads(1);
+        ai.setRootSplit(false);
+        Bench.run(ai, Math.min(Math.max(depth, 1), Search.MAX_DEPTH), nodes,
+                  System.out);
+    }
+
     /** @param match is Autodraw. */
     private void autoDo(Matcher match) {
         if (match.group(1).equals("black")) {
+            _black.stopThinking();
             _black = _autoPlayerTemplate.create(BLACK, this);
         } else {
+            _white.stopThinking();
             _white = _autoPlayerTemplate.create(WHITE, this);
         }
     }
     /** @param match is Same but manual. */
     private void manualDo(Matcher match) {
         if (match.group(1).equals("black")) {
+            _black.stopThinking();
             _black = _manualPlayerTemplate.create(BLACK, this);
         } else  {
+            _white.stopThinking();
             _white = _manualPlayerTemplate.create(WHITE, this);
         }
     }
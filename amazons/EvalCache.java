@@ -0,0 +1,103 @@
+package amazons;
+
+import java.util.Arrays;
+
+/** A fixed-size cache of static evaluations, indexed by Board.hash.
+ *  Keys and values are held in two primitive arrays, grouped into
+ *  buckets of two entries.  A new entry goes into the first entry of its
+ *  bucket, moving the old first entry to the second and evicting the old
+ *  second, and a hit in the second entry swaps it to the first, so each
+ *  bucket keeps its two most recently used positions.  The cache counts
+ *  its hits and misses.
+ *  <p>As with TranspositionTable, searches in several threads may share
+ *  a cache without locking: each entry holds its key XORed with its
+ *  value, so that an entry torn by racing stores reads as missing.  The
+ *  counters are then only approximate.
+ *  @author Anastasia
+ */
+final class EvalCache {
+
+    /** Returned by probe for positions not in the cache.  No evaluation
+     *  may have this value. */
+    static final int MISSING = Integer.MIN_VALUE;
+
+    /** Bytes per entry. */
+    private static final int ENTRY_BYTES = Long.BYTES + Integer.BYTES;
+
+    /** A cache occupying about MEGABYTES megabytes (rounded down to a
+     *  power of two number of buckets, and at least one bucket). */
+    EvalCache(int megabytes) {
+        long entries = (long) megabytes * (1 << 20) / ENTRY_BYTES;
+        long buckets = Long.highestOneBit(Math.max(entries / 2, 1));
+        buckets = Math.min(buckets, 1 << 29);
+        _keys = new long[(int) buckets * 2];
+        _values = new int[(int) buckets * 2];
+        Arrays.fill(_values, MISSING);
+        _mask = buckets - 1;
+    }
+
+    /** Remove all entries and reset the counters. */
+    void clear() {
+        Arrays.fill(_keys, 0);
+        Arrays.fill(_values, MISSING);
+        _hits = _misses = 0;
+    }
+
+    /** Return the evaluation stored for KEY, or MISSING. */
+    int probe(long key) {
+        int b = bucket(key);
+        int value = _values[b];
+        if ((_keys[b] ^ value) == key && value != MISSING) {
+            _hits += 1;
+            return value;
+        }
+        value = _values[b + 1];
+        if ((_keys[b + 1] ^ value) == key && value != MISSING) {
+            _hits += 1;
+            _keys[b + 1] = _keys[b];
+            _values[b + 1] = _values[b];
+            _keys[b] = key ^ value;
+            _values[b] = value;
+            return value;
+        }
+        _misses += 1;
+        return MISSING;
+    }
+
+    /** Record that the position with KEY evaluates to VALUE. */
+    void store(long key, int value) {
+        int b = bucket(key);
+        _keys[b + 1] = _keys[b];
+        _values[b + 1] = _values[b];
+        _keys[b] = key ^ value;
+        _values[b] = value;
+    }
+
+    /** Return the number of probes that found their position. */
+    long hits() {
+        return _hits;
+    }
+
+    /** Return the number of probes that did not find their position. */
+    long misses() {
+        return _misses;
+    }
+
+    /** Return the index in _keys of the bucket for KEY. */
+    private int bucket(long key) {
+        return (int) (key & _mask) * 2;
+    }
+
+    /** Keys of the entries, two per bucket, each XORed with its
+     *  value. */
+    private final long[] _keys;
+
+    /** Values of the entries, parallel to _keys. */
+    private final int[] _values;
+
+    /** Mask selecting a bucket number from a key. */
+    private final long _mask;
+
+    /** Numbers of hits and misses since creation or clear. */
+    private long _hits, _misses;
+}
@@ -0,0 +1,187 @@
+package amazons;
+
+import java.io.Reader;
+import java.util.Scanner;
+
+import static amazons.BitBoards.*;
+import static amazons.Piece.*;
+import static amazons.Utils.error;
+
+/** The static evaluation used by the search: a weighted sum of several
+ *  features of a position, each measuring white's advantage, computed
+ *  from one full Territory.compute.  The features are
+ *  <ul>
+ *  <li>QUEEN_TERRITORY: the number of empty squares white's queens reach
+ *      in fewer queen moves than black's, less the reverse.  Squares both
+ *      reach equally soon count an eighth for the side to move.
+ *  <li>KING_TERRITORY: the same for king distances (moves of one step),
+ *      which judge better who will fill a region once it is closed.
+ *  <li>CONTESTED: the sum over the empty squares of 2 * (2^-W - 2^-B),
+ *      where W and B are their queen distances from white and black.
+ *      This weights each square by how soon either side can get to it,
+ *      so it favors a presence in the squares that are still contested.
+ *  <li>MOBILITY: the number of squares each queen can reach in one move,
+ *      up to MOBILITY_CAP, summed over white's queens, less black's.
+ *      It penalizes queens that are about to be shut in.
+ *  </ul>
+ *  Each feature has two weights: one for the opening (all squares empty
+ *  but the queens') and one for the end (no empty squares).  The weight
+ *  used is interpolated between them by the number of empty squares, so
+ *  the mix shifts as spears fill the board.  The weights form a vector
+ *  of 2 * FEATURES ints (the opening weights, then the ending weights)
+ *  that can be read from a file (see read).  A weight of W adds W
+ *  points for each unit of its feature.
+ *  @author Anastasia
+ */
+final class Evaluator {
+
+    /** Indices of the features. */
+    static final int
+        QUEEN_TERRITORY = 0, KING_TERRITORY = 1, CONTESTED = 2, MOBILITY = 3;
+
+    /** Number of features. */
+    static final int FEATURES = 4;
+
+    /** Default weights: for the opening, then for the end. */
+    static final int[] DEFAULT_WEIGHTS = {
+        10, 6, 8, 12,
+        16, 8, 2, 4,
+    };
+
+    /** The largest mobility counted for one queen. */
+    static final int MOBILITY_CAP = 8;
+
+    /** An evaluator with the default weights. */
+    Evaluator() {
+        this(DEFAULT_WEIGHTS);
+    }
+
+    /** An evaluator with weights WEIGHTS (as for DEFAULT_WEIGHTS). */
+    Evaluator(int[] weights) {
+        if (weights.length != 2 * FEATURES) {
+            throw error("there must be %d weights", 2 * FEATURES);
+        }
+        _weights = weights.clone();
+    }
+
+    /** Return an evaluator with the weights in INPUT: 2 * FEATURES
+     *  integers separated by whitespace. */
+    static Evaluator read(Reader input) {
+        Scanner in = new Scanner(input);
+        int[] weights = new int[2 * FEATURES];
+        for (int i = 0; i < weights.length; i += 1) {
+            if (!in.hasNextInt()) {
+                throw error("weights must be %d integers", weights.length);
+            }
+            weights[i] = in.nextInt();
+        }
+        if (in.hasNext()) {
+            throw error("weights must be %d integers", weights.length);
+        }
+        return new Evaluator(weights);
+    }
+
+    /** Return a copy of my weights. */
+    int[] weights() {
+        return _weights.clone();
+    }
+
+    /** Return the value of BOARD for white. */
+    int evaluate(Board board) {
+        board.computeTerritory(_territory, true);
+        int tie = board.turn() == WHITE ? UNIT / 8 : -UNIT / 8;
+        _features[QUEEN_TERRITORY] = territory(false, tie);
+        _features[KING_TERRITORY] = territory(true, tie);
+        _features[CONTESTED] = contested();
+        _features[MOBILITY] = mobility(WHITE) - mobility(BLACK);
+
+        int empty = Math.min(board.numEmpty(), OPENING_EMPTY);
+        long total = 0;
+        for (int f = 0; f < FEATURES; f += 1) {
+            long weight = (long) _weights[f] * empty
+                + (long) _weights[FEATURES + f] * (OPENING_EMPTY - empty);
+            total += weight * _features[f];
+        }
+        return (int) (total / ((long) OPENING_EMPTY * UNIT));
+    }
+
+    /** Return the value that evaluate gives to one empty square that
+     *  only white can reach, and that counts in both QUEEN_TERRITORY and
+     *  KING_TERRITORY, in a position with NUMEMPTY empty squares. */
+    int squareValue(int numEmpty) {
+        int empty = Math.min(numEmpty, OPENING_EMPTY);
+        long weight = (long) (_weights[QUEEN_TERRITORY]
+                              + _weights[KING_TERRITORY]) * empty
+            + (long) (_weights[FEATURES + QUEEN_TERRITORY]
+                      + _weights[FEATURES + KING_TERRITORY])
+            * (OPENING_EMPTY - empty);
+        return (int) (weight / OPENING_EMPTY);
+    }
+
+    /** Return the value, in 1/UNIT squares, of QUEEN_TERRITORY (or of
+     *  KING_TERRITORY iff KING) in the last computed territory, counting
+     *  TIE for each square both sides reach equally soon. */
+    private int territory(boolean king, int tie) {
+        Territory t = _territory;
+        int n = king
+            ? Math.max(t.numKingLayers(WHITE), t.numKingLayers(BLACK))
+            : Math.max(t.numLayers(WHITE), t.numLayers(BLACK));
+        long wSeenLo = 0, wSeenHi = 0, bSeenLo = 0, bSeenHi = 0;
+        int result = 0;
+        for (int k = 1; k <= n; k += 1) {
+            long wLo = king ? t.kingLayerLo(WHITE, k) : t.layerLo(WHITE, k),
+                wHi = king ? t.kingLayerHi(WHITE, k) : t.layerHi(WHITE, k),
+                bLo = king ? t.kingLayerLo(BLACK, k) : t.layerLo(BLACK, k),
+                bHi = king ? t.kingLayerHi(BLACK, k) : t.layerHi(BLACK, k);
+            wSeenLo |= wLo;
+            wSeenHi |= wHi;
+            bSeenLo |= bLo;
+            bSeenHi |= bHi;
+            result += UNIT * (count(wLo & ~bSeenLo, wHi & ~bSeenHi)
+                              - count(bLo & ~wSeenLo, bHi & ~wSeenHi))
+                + tie * count(wLo & bLo, wHi & bHi);
+        }
+        return result;
+    }
+
+    /** Return the value, in 1/UNIT squares, of CONTESTED in the last
+     *  computed territory. */
+    private int contested() {
+        Territory t = _territory;
+        int n = Math.min(Math.max(t.numLayers(WHITE), t.numLayers(BLACK)),
+                         LOG_UNIT + 1);
+        int result = 0;
+        for (int k = 1; k <= n; k += 1) {
+            int diff = count(t.layerLo(WHITE, k), t.layerHi(WHITE, k))
+                - count(t.layerLo(BLACK, k), t.layerHi(BLACK, k));
+            result += diff * ((2 * UNIT) >> k);
+        }
+        return result;
+    }
+
+    /** Return the total capped mobility, in 1/UNIT squares, of SIDE's
+     *  queens in the last computed territory. */
+    private int mobility(Piece side) {
+        int result = 0;
+        for (int i = 0; i < _territory.numQueens(side); i += 1) {
+            result += Math.min(_territory.mobility(side, i), MOBILITY_CAP);
+        }
+        return result * UNIT;
+    }
+
+    /** Features are computed in units of 1/UNIT. */
+    private static final int LOG_UNIT = 6, UNIT = 1 << LOG_UNIT;
+
+    /** Number of empty squares at the start of a game. */
+    private static final int OPENING_EMPTY = Board.BOARD_SIZE - 8;
+
+    /** My weights. */
+    private final int[] _weights;
+
+    /** Distance maps of the position being evaluated. */
+    private final Territory _territory = new Territory();
+
+    /** Values of the features of the position being evaluated, in
+     *  1/UNIT squares. */
+    private final int[] _features = new int[FEATURES];
+}
@@ -0,0 +1,232 @@
+package amazons;
+
+import java.util.Arrays;
+
+import static amazons.BitBoards.*;
+
+/** A solver for the regions (see Regions) that hold the queens of only
+ *  one side.  Since the other side can never interfere, the only
+ *  question about such a region is how many moves its owner can make in
+ *  it before running out: its filling number.  Each move leaves one
+ *  fewer empty square, so the filling number is at most the number of
+ *  empty squares, and it falls short only in "defective" regions, whose
+ *  shape forces the owner to wall off some squares.  The solver
+ *  searches the longest sequence of moves depth first, stopping as
+ *  soon as it finds one that fills every square, which is what happens
+ *  in most regions.  Positions already searched are skipped, since the
+ *  number of moves made to reach a position is fixed by its number of
+ *  empty squares.  If the search visits more than NODE_LIMIT positions,
+ *  it gives up, and reports the longest sequence found as a lower bound
+ *  and the number of empty squares as an upper bound.  Results are
+ *  remembered, since a search meets the same regions many times.
+ *  @author Anastasia
+ */
+final class Filler {
+
+    /** Most positions searched in one solve. */
+    static final int NODE_LIMIT = 1 << 14;
+
+    /** A solver that remembers no results yet. */
+    Filler() {
+        Arrays.fill(_cacheUpper, -1);
+    }
+
+    /** Find the filling number of the region whose empty squares are
+     *  EMPTYLO, EMPTYHI and whose queens, all of one side, are QUEENSLO,
+     *  QUEENSHI, and return a lower bound on it (the number itself if
+     *  exact).  Afterwards, upper gives an upper bound, and firstMove the
+     *  first move of a sequence of moves achieving the lower bound. */
+    int solve(long emptyLo, long emptyHi, long queensLo, long queensHi) {
+        int c = cacheIndex(emptyLo, emptyHi, queensLo, queensHi);
+        if (_cacheEmptyLo[c] == emptyLo && _cacheEmptyHi[c] == emptyHi
+            && _cacheQueensLo[c] == queensLo && _cacheQueensHi[c] == queensHi
+            && _cacheUpper[c] >= 0) {
+            _lower = _cacheLower[c];
+            _upper = _cacheUpper[c];
+            _firstMove = _cacheMove[c];
+            return _lower;
+        }
+
+        _size = count(emptyLo, emptyHi);
+        _lower = 0;
+        _firstMove = 0;
+        _nodes = 0;
+        _stamp += 1;
+        if (_size > 0 && (queensLo | queensHi) != 0) {
+            fill(emptyLo, emptyHi, queensLo, queensHi, 0, 0);
+        }
+        _upper = _nodes > NODE_LIMIT ? _size : _lower;
+
+        _cacheEmptyLo[c] = emptyLo;
+        _cacheEmptyHi[c] = emptyHi;
+        _cacheQueensLo[c] = queensLo;
+        _cacheQueensHi[c] = queensHi;
+        _cacheLower[c] = _lower;
+        _cacheUpper[c] = _upper;
+        _cacheMove[c] = _firstMove;
+        return _lower;
+    }
+
+    /** Return the upper bound on the filling number found by the last
+     *  solve.  It equals the lower bound iff the solution is exact. */
+    int upper() {
+        return _upper;
+    }
+
+    /** Return the code (see Move.code) of the first move of a longest
+     *  sequence found by the last solve, or 0 if no move is possible. */
+    int firstMove() {
+        return _firstMove;
+    }
+
+    /** Search the moves of the queens QLO, QHI into the empty squares
+     *  ELO, EHI, where DEPTH moves have been made since the start of the
+     *  solve, the first of which had code START (if DEPTH > 0).  Updates
+     *  _lower and _firstMove, and returns true iff the search should
+     *  stop, because every square has been filled or the node limit has
+     *  been passed. */
+    private boolean fill(long eLo, long eHi, long qLo, long qHi, int depth,
+                         int start) {
+        if (depth > _lower) {
+            _lower = depth;
+            _firstMove = start;
+            if (_lower == _size) {
+                return true;
+            }
+        }
+        _nodes += 1;
+        if (_nodes > NODE_LIMIT || !visit(eLo, eHi, qLo, qHi)) {
+            return _nodes > NODE_LIMIT;
+        }
+        for (long qs0 = qLo, qs1 = qHi; (qs0 | qs1) != 0; ) {
+            int from = first(qs0, qs1);
+            qs0 &= ~loBit(from);
+            qs1 &= ~hiBit(from);
+            queenReach(from, ~eLo, ~eHi, _reach);
+            long toLo = _reach[0], toHi = _reach[1];
+            while ((toLo | toHi) != 0) {
+                int to = first(toLo, toHi);
+                toLo &= ~loBit(to);
+                toHi &= ~hiBit(to);
+                long e0 = (eLo & ~loBit(to)) | loBit(from),
+                    e1 = (eHi & ~hiBit(to)) | hiBit(from);
+                long q0 = (qLo & ~loBit(from)) | loBit(to),
+                    q1 = (qHi & ~hiBit(from)) | hiBit(to);
+                queenReach(to, ~e0, ~e1, _reach);
+                long spLo = _reach[0], spHi = _reach[1];
+                while ((spLo | spHi) != 0) {
+                    int spear = first(spLo, spHi);
+                    spLo &= ~loBit(spear);
+                    spHi &= ~hiBit(spear);
+                    int code = depth == 0 ? Move.code(from, to, spear) : start;
+                    if (fill(e0 & ~loBit(spear), e1 & ~hiBit(spear), q0, q1,
+                             depth + 1, code)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Record that the position with empty squares ELO, EHI and queens
+     *  QLO, QHI has been searched by the current solve, and return true
+     *  iff it had not been searched before.  Positions that do not fit
+     *  in the table are searched again. */
+    private boolean visit(long eLo, long eHi, long qLo, long qHi) {
+        int h = hash(eLo, eHi, qLo, qHi) >>> (32 - VISITED_BITS);
+        for (int probe = 0; probe < VISITED_PROBES; probe += 1) {
+            int i = (h + probe) & (VISITED_SIZE - 1);
+            if (_visitStamp[i] != _stamp) {
+                _visitStamp[i] = _stamp;
+                _visitEmptyLo[i] = eLo;
+                _visitEmptyHi[i] = eHi;
+                _visitQueensLo[i] = qLo;
+                _visitQueensHi[i] = qHi;
+                return true;
+            } else if (_visitEmptyLo[i] == eLo && _visitEmptyHi[i] == eHi
+                       && _visitQueensLo[i] == qLo
+                       && _visitQueensHi[i] == qHi) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Return the index in my cache of the region with empty squares
+     *  ELO, EHI and queens QLO, QHI. */
+    private static int cacheIndex(long eLo, long eHi, long qLo, long qHi) {
+        return hash(eLo, eHi, qLo, qHi) >>> (32 - CACHE_BITS);
+    }
+
+    /** Return a hash of the region with empty squares ELO, EHI and queens
+     *  QLO, QHI, whose high bits are well mixed. */
+    private static int hash(long eLo, long eHi, long qLo, long qHi) {
+        long h = eLo * 0x9e3779b97f4a7c15L;
+        h = (h ^ eHi) * 0xc2b2ae3d27d4eb4fL;
+        h = (h ^ qLo) * 0x165667b19e3779f9L;
+        h = (h ^ qHi) * 0x9e3779b97f4a7c15L;
+        return (int) (h >>> 32);
+    }
+
+    /** Log2 of the number of entries in the table of searched
+     *  positions. */
+    private static final int VISITED_BITS = 15;
+
+    /** Number of entries in the table of searched positions. */
+    private static final int VISITED_SIZE = 1 << VISITED_BITS;
+
+    /** Number of consecutive entries tried for a position. */
+    private static final int VISITED_PROBES = 4;
+
+    /** Log2 of the number of regions whose results are remembered. */
+    private static final int CACHE_BITS = 10;
+
+    /** Number of regions whose results are remembered. */
+    private static final int CACHE_SIZE = 1 << CACHE_BITS;
+
+    /** Number of empty squares of the region being solved. */
+    private int _size;
+
+    /** Bounds on the filling number found by the last solve. */
+    private int _lower, _upper;
+
+    /** First move of a longest sequence found by the last solve. */
+    private int _firstMove;
+
+    /** Number of positions visited by the current solve. */
+    private int _nodes;
+
+    /** Number of the current solve, which marks the entries of the
+     *  table of searched positions that belong to it. */
+    private int _stamp;
+
+    /** The table of searched positions: entry I holds the empty squares
+     *  and queens of a position searched by the solve whose number is
+     *  _visitStamp[I]. */
+    private final long[] _visitEmptyLo = new long[VISITED_SIZE],
+        _visitEmptyHi = new long[VISITED_SIZE],
+        _visitQueensLo = new long[VISITED_SIZE],
+        _visitQueensHi = new long[VISITED_SIZE];
+
+    /** Solve numbers of the entries of the table of searched
+     *  positions. */
+    private final int[] _visitStamp = new int[VISITED_SIZE];
+
+    /** The cache of results: entry I holds the region (empty squares and
+     *  queens) whose bounds and first move are in the same entries of
+     *  _cacheLower, _cacheUpper, and _cacheMove.  Unused entries have an
+     *  upper bound of -1. */
+    private final long[] _cacheEmptyLo = new long[CACHE_SIZE],
+        _cacheEmptyHi = new long[CACHE_SIZE],
+        _cacheQueensLo = new long[CACHE_SIZE],
+        _cacheQueensHi = new long[CACHE_SIZE];
+
+    /** Cached bounds and first moves (see _cacheEmptyLo). */
+    private final int[] _cacheLower = new int[CACHE_SIZE],
+        _cacheUpper = new int[CACHE_SIZE],
+        _cacheMove = new int[CACHE_SIZE];
+
+    /** Scratch space for the low and high words of a reachable set. */
+    private final long[] _reach = new long[2];
+}
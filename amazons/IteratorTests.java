@@ -80,6 +80,91 @@ public class IteratorTests {
     }
 
 
+    /** Tests that generateMoves produces exactly the moves delivered by
+     *  legalMoves, on the initial board and on TEST_LEGAL. */
+    @Test
+    public void testGenerateMoves() {
+        Board b = new Board();
+        int[] buffer = new int[Board.MAX_MOVES];
+        assertEquals(2176, b.generateMoves(buffer));
+        assertSameMoves(b, Piece.WHITE, buffer);
+        b.makeMove(Move.mv("d1-d7(g7)"));
+        assertSameMoves(b, Piece.BLACK, buffer);
+
+        Board c = new Board();
+        buildBoard(c, TEST_LEGAL);
+        assertEquals(4, c.generateMoves(Piece.WHITE, buffer));
+        assertSameMoves(c, Piece.WHITE, buffer);
+    }
+
+    /** Tests that perft finds the known numbers of positions one and two
+     *  moves from the initial board, counting on one thread or several,
+     *  and leaves the board unchanged. */
+    @Test
+    public void testPerft() {
+        Board b = new Board();
+        String before = b.toString();
+        assertEquals(2176, Perft.perft(b, 1, 1));
+        assertEquals(4307152, Perft.perft(b, 2, 1));
+        assertEquals(4307152, Perft.perft(b, 2, 4));
+        assertEquals(before, b.toString());
+        b.makeMove(Move.mv("d1-d7(g7)"));
+        assertEquals(Perft.perft(b, 2, 1), Perft.perft(b, 2, 3));
+    }
+
+    /** Tests that the two stages used by a split-ply search, queen
+     *  moves and then spear throws from the moved queen, deliver the
+     *  same moves as generateMoves, and that moveQueen can be undone. */
+    @Test
+    public void testQueenMovesAndSpears() {
+        Board b = new Board();
+        b.makeMove(Move.mv("d1-d7(g7)"));
+        String before = b.toString();
+        long hash = b.hash();
+        int[] queenMoves = new int[Board.MAX_MOVES];
+        int[] spears = new int[Board.BOARD_SIZE];
+        Set<Move> moves = new HashSet<>();
+        int n = b.generateQueenMoves(Piece.BLACK, queenMoves);
+        for (int i = 0; i < n; i += 1) {
+            int from = Move.codeFrom(queenMoves[i]),
+                to = Move.codeTo(queenMoves[i]);
+            b.moveQueen(from, to);
+            assertEquals(Piece.BLACK, b.get(Square.sq(to)));
+            int k = b.reachableFrom(to, -1, spears);
+            assertEquals(k, b.numReachable(to, -1));
+            b.moveQueen(to, from);
+            assertEquals(k, b.numReachable(to, from));
+            for (int j = 0; j < k; j += 1) {
+                moves.add(Move.mv(Move.code(from, to, spears[j])));
+            }
+        }
+        assertEquals(before, b.toString());
+        assertEquals(hash, b.hash());
+        int[] buffer = new int[Board.MAX_MOVES];
+        assertEquals(b.generateMoves(buffer), moves.size());
+        assertSameMoves(b, Piece.BLACK, buffer);
+        for (int i = 0; i < moves.size(); i += 1) {
+            assertTrue(moves.contains(Move.mv(buffer[i])));
+        }
+    }
+
+    /** Asserts that B.generateMoves(SIDE, BUFFER) and B.legalMoves(SIDE)
+     *  deliver the same set of moves. */
+    private void assertSameMoves(Board b, Piece side, int[] buffer) {
+        Set<Move> expected = new HashSet<>();
+        Iterator<Move> legalMoves = b.legalMoves(side);
+        while (legalMoves.hasNext()) {
+            expected.add(legalMoves.next());
+        }
+        int n = b.generateMoves(side, buffer);
+        Set<Move> generated = new HashSet<>();
+        for (int i = 0; i < n; i += 1) {
+            generated.add(Move.mv(buffer[i]));
+        }
+        assertEquals(n, generated.size());
+        assertEquals(expected, generated);
+    }
+
     private void buildBoard(Board b, Piece[][] target) {
         for (int col = 0; col < Board.SIZE; col++) {
             for (int row = Board.SIZE - 1; row >= 0; row--) {
@@ -0,0 +1,672 @@
+package amazons;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Math.*;
+
+import static amazons.Piece.*;
+
+/** A Player that chooses moves by Monte Carlo tree search (UCT), as an
+ *  alternative to the alpha-beta search of AI.  Each iteration descends
+ *  the tree from the root, choosing at each node the child with the best
+ *  upper confidence bound (UCB1) on the reward of its move, adds one new
+ *  node, estimates the value of its position (see setPlayoutLength), and
+ *  adds that estimate to the rewards of the nodes on the path.  The
+ *  most visited move at the root is played when the time allotted to
+ *  the move runs out.
+ *  <p>With up to 2176 moves from a position, trying every move of a node
+ *  before looking deeper would leave the tree one level deep, so the
+ *  tree is widened progressively: a node with N visits may have at most
+ *  1 + WIDENING * N^(1/2) children.  The child added when a node widens
+ *  is the best, by boardScore, of SAMPLES moves drawn at random from its
+ *  legal moves, so each expansion costs the same regardless of the
+ *  branching factor.
+ *  <p>The tree is held in parallel arrays of primitives indexed by node
+ *  number, rather than in one object per node.  The children of a node
+ *  form a linked list through _sibling.
+ *  <p>Several workers, each in its own thread with its own Board, may
+ *  grow one tree at once.  Visit counts and rewards are updated with
+ *  atomic adds on the arrays (through VarHandles), not under locks.  A
+ *  worker passing through a node adds a virtual loss to it (a visit with
+ *  no reward), which it takes back when it adds the real result, so
+ *  that other workers see the node as worse meanwhile and spread out
+ *  over the tree.  Only adding a child takes a per-node flag, so that
+ *  two workers do not add the same move; a worker finding the flag
+ *  taken simply descends through the existing children instead, or
+ *  waits for the first child if there are none yet.
+ *  @author Anastasia
+ */
+class MCTSPlayer extends Player {
+
+    /** Default number of random moves played from a new node before its
+     *  position is evaluated. */
+    static final int DEFAULT_PLAYOUT_LENGTH = 0;
+
+    /** Default size of the tree, in megabytes. */
+    static final int DEFAULT_TREE_SIZE = 32;
+
+    /** A new MCTSPlayer with no piece or controller (intended to produce
+     *  a template). */
+    MCTSPlayer() {
+        this(null, null);
+    }
+
+    /** A new MCTSPlayer playing PIECE under control of CONTROLLER. */
+    MCTSPlayer(Piece piece, Controller controller) {
+        super(piece, controller);
+    }
+
+    @Override
+    Player create(Piece piece, Controller controller) {
+        MCTSPlayer player = new MCTSPlayer(piece, controller);
+        player._moveTime = _moveTime;
+        player._gameTime = _gameTime;
+        player._playoutLength = _playoutLength;
+        player._treeSize = _treeSize;
+        player._weights = _weights.clone();
+        player._threads = _threads;
+        return player;
+    }
+
+    @Override
+    String myMove() {
+        Move move = findMove();
+        _controller.reportMove(move);
+        return move.toString();
+    }
+
+    /** Limit this player, and the players it creates, to MOVETIME
+     *  milliseconds for any one move and GAMETIME milliseconds for all
+     *  its moves in a game. */
+    void setTimeLimits(long moveTime, long gameTime) {
+        _moveTime = moveTime;
+        _gameTime = gameTime;
+    }
+
+    /** Have this player, and the players it creates, estimate the value
+     *  of a new node by playing LENGTH random moves from it and
+     *  evaluating the resulting position with the static evaluation
+     *  (directly, if LENGTH is 0). */
+    void setPlayoutLength(int length) {
+        _playoutLength = length;
+    }
+
+    /** Set the size of the tree of this player, and of the players it
+     *  creates, to about MEGABYTES megabytes. */
+    void setTreeSize(int megabytes) {
+        _treeSize = megabytes;
+        _move = null;
+    }
+
+    /** Have this player, and the players it creates, evaluate positions
+     *  with the weights of EVALUATOR. */
+    void setEvaluator(Evaluator evaluator) {
+        _weights = evaluator.weights();
+        _workers = null;
+    }
+
+    /** Have this player, and the players it creates, search with THREADS
+     *  workers (the calling thread and THREADS - 1 others). */
+    void setThreads(int threads) {
+        _threads = threads;
+        _workers = null;
+        if (_pool != null) {
+            _pool.shutdown();
+            _pool = null;
+        }
+    }
+
+    /** Return a move for me from the current position, assuming there
+     *  is a move, searching for the time allotted by moveBudget. */
+    private Move findMove() {
+        long start = System.currentTimeMillis();
+        Board b = new Board(board());
+        if (b.numMoves() < 2) {
+            _timeUsed = 0;
+        }
+        _seed = _controller.randInt(Integer.MAX_VALUE);
+        int move = search(b, start + moveBudget(b), Long.MAX_VALUE);
+        _timeUsed += System.currentTimeMillis() - start;
+        return Move.mv(move);
+    }
+
+    /** Search from BOARD until time DEADLINE (as from
+     *  System.currentTimeMillis) or until ITERATIONS iterations are done
+     *  (divided evenly among the workers), and return the code of the
+     *  most visited move at the root.  If the first worker runs out of
+     *  time, the others are stopped; otherwise, they finish their
+     *  shares. */
+    int search(Board board, long deadline, long iterations) {
+        prepare();
+        _size.set(0);
+        newNode(0);
+        _workers[0].rankRoot(board);
+        _stop = false;
+        long perWorker = iterations / _threads;
+        Future<?>[] helpers = new Future<?>[_threads];
+        for (int i = 1; i < _threads; i += 1) {
+            Worker worker = _workers[i];
+            worker.start(board, i);
+            helpers[i] = _pool.submit(() -> worker.run(deadline, perWorker));
+        }
+        long share = iterations - perWorker * (_threads - 1);
+        _workers[0].start(board, 0);
+        _workers[0].run(deadline, share);
+        _stop = _workers[0]._iterations < share;
+        for (int i = 1; i < _threads; i += 1) {
+            try {
+                helpers[i].get();
+            } catch (InterruptedException | ExecutionException excp) {
+                throw new Error("search worker failed", excp);
+            }
+        }
+        return bestMove();
+    }
+
+    /** Return the number of iterations of the last search. */
+    long iterations() {
+        long total = 0;
+        for (Worker worker : _workers) {
+            total += worker._iterations;
+        }
+        return total;
+    }
+
+    /** Return the number of finished iterations that passed through
+     *  node NODE of the tree of the last search (the root is node 0). */
+    int visits(int node) {
+        return _visits[node];
+    }
+
+    /** Return the nodes that are children of node NODE of the tree of
+     *  the last search. */
+    int[] children(int node) {
+        int[] children = new int[_numChildren[node]];
+        int k = 0;
+        for (int c = _child[node]; c >= 0; c = _sibling[c]) {
+            children[k] = c;
+            k += 1;
+        }
+        return children;
+    }
+
+    /** Return the number of nodes in the tree of the last search. */
+    int treeSize() {
+        return min(_size.get(), _move.length);
+    }
+
+    /** Create my tree, workers, and thread pool, if they do not exist
+     *  yet. */
+    private void prepare() {
+        if (_move == null) {
+            allocate();
+        }
+        if (_workers == null) {
+            _workers = new Worker[_threads];
+            for (int i = 0; i < _threads; i += 1) {
+                _workers[i] = new Worker();
+            }
+        }
+        if (_pool == null && _threads > 1) {
+            _pool = Executors.newFixedThreadPool(_threads - 1, r -> {
+                Thread thread = new Thread(r, "MCTS worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /** The state of one thread of a search: its own copy of the root
+     *  position, random numbers, evaluator, and buffers. */
+    private class Worker {
+
+        /** Prepare to search from a copy of BOARD as worker #INDEX. */
+        void start(Board board, int index) {
+            _board.copy(board);
+            _random = new Random(_seed + index);
+            _iterations = 0;
+        }
+
+        /** Do iterations until time DEADLINE, until ITERATIONS are done,
+         *  or until the search is stopped. */
+        void run(long deadline, long iterations) {
+            while (!_stop && _iterations < iterations) {
+                if (_iterations % CLOCK_INTERVAL == 0
+                    && System.currentTimeMillis() >= deadline
+                    && _numChildren[ROOT] > 0) {
+                    break;
+                }
+                iterate();
+                _iterations += 1;
+            }
+        }
+
+        /** Do one iteration of the search, leaving my board at the
+         *  root.  A node with no children that another worker is
+         *  widening is waited for, so that every iteration through a
+         *  node goes on to one of its children, unless the node ends the
+         *  game or can have no children. */
+        private void iterate() {
+            Board board = _board;
+            int node = ROOT;
+            int depth = 0;
+            _path[depth] = node;
+            double reward;
+            while (true) {
+                Piece winner = board.winner();
+                if (winner != EMPTY) {
+                    reward = winner == WHITE ? 1.0 : 0.0;
+                    break;
+                }
+                int child = canWiden(node) ? expand(node) : -1;
+                if (child >= 0) {
+                    board.makeMove(_move[child]);
+                    depth += 1;
+                    _path[depth] = child;
+                    reward = estimate();
+                    break;
+                }
+                child = select(node);
+                if (child < 0 && (canWiden(node) || hasChild(node))) {
+                    Thread.onSpinWait();
+                    continue;
+                } else if (child < 0) {
+                    reward = estimate();
+                    break;
+                }
+                INTS.getAndAdd(_visits, child, VIRTUAL_LOSS);
+                board.makeMove(_move[child]);
+                depth += 1;
+                _path[depth] = child;
+                node = child;
+            }
+            for (int k = depth; k > 0; k -= 1) {
+                int n = _path[k];
+                board.undo();
+                double r = board.turn() == WHITE ? reward : 1 - reward;
+                LONGS.getAndAdd(_rewards, n, (long) (r * REWARD_UNIT));
+                INTS.getAndAdd(_visits, n, 1 - VIRTUAL_LOSS);
+            }
+            INTS.getAndAdd(_visits, ROOT, 1);
+        }
+
+        /** Add a child to NODE, whose position is on my board, and return
+         *  it, or -1 if NODE can no longer widen or another worker is
+         *  adding a child to it.  The root's children are added in the
+         *  order of _rootOrder; any other node's new child is the best
+         *  (by boardScore) of SAMPLES random legal moves that are not yet
+         *  its children. */
+        private int expand(int node) {
+            if (!INTS.compareAndSet(_busy, node, 0, 1)) {
+                return -1;
+            }
+            try {
+                if (!canWiden(node)) {
+                    return -1;
+                }
+                if (node == ROOT) {
+                    return addChild(ROOT, _rootOrder[_numChildren[ROOT]]);
+                }
+                int move = sample(node);
+                return move == 0 ? -1 : addChild(node, move);
+            } finally {
+                INTS.setVolatile(_busy, node, 0);
+            }
+        }
+
+        /** Return the best (by boardScore) of SAMPLES random legal moves
+         *  from my board that are not yet children of NODE, or 0 if all
+         *  legal moves are children.  Records the number of legal moves
+         *  of NODE. */
+        private int sample(int node) {
+            Board board = _board;
+            int n = board.generateMoves(_moves);
+            _numLegal[node] = n;
+            if (_numChildren[node] >= n) {
+                return 0;
+            }
+            int sense = board.turn() == WHITE ? 1 : -1;
+            int best = 0;
+            int bestScore = Integer.MIN_VALUE;
+            for (int k = 0; k < SAMPLES; k += 1) {
+                int m = _moves[_random.nextInt(n)];
+                if (isChild(node, m)) {
+                    continue;
+                }
+                board.makeMove(m);
+                int score = sense * board.boardScore();
+                board.undo();
+                if (score > bestScore) {
+                    best = m;
+                    bestScore = score;
+                }
+            }
+            for (int i = 0; best == 0; i += 1) {
+                if (!isChild(node, _moves[i])) {
+                    best = _moves[i];
+                }
+            }
+            return best;
+        }
+
+        /** Fill _rootOrder with the legal moves from BOARD, the root
+         *  position, best first by the static evaluation of the positions
+         *  they lead to, and record their number.  Since the root widens
+         *  farthest, its moves are worth ranking fully. */
+        void rankRoot(Board board) {
+            int n = board.generateMoves(_rootOrder);
+            int sense = board.turn() == WHITE ? 1 : -1;
+            for (int i = 0; i < n; i += 1) {
+                int m = _rootOrder[i];
+                board.makeMove(m);
+                long score = sense * _evaluator.evaluate(board);
+                board.undo();
+                _rootKeys[i] = (-score << 32) | (m & 0xffffffffL);
+            }
+            Arrays.sort(_rootKeys, 0, n);
+            for (int i = 0; i < n; i += 1) {
+                _rootOrder[i] = (int) _rootKeys[i];
+            }
+            _numLegal[ROOT] = n;
+        }
+
+        /** Return the estimated reward for white (between 0 and 1) of
+         *  the position on my board, as described for setPlayoutLength.
+         *  Leaves my board unchanged. */
+        private double estimate() {
+            Board board = _board;
+            int made = 0;
+            double reward = -1;
+            while (made < _playoutLength) {
+                int move = randomMove();
+                if (move == 0) {
+                    reward = board.turn() == WHITE ? 0.0 : 1.0;
+                    break;
+                }
+                board.makeMove(move);
+                made += 1;
+            }
+            if (reward < 0) {
+                double value = _evaluator.evaluate(board);
+                reward = 1 / (1 + exp(-value / EVAL_SCALE));
+            }
+            for (; made > 0; made -= 1) {
+                board.undo();
+            }
+            return reward;
+        }
+
+        /** Return the code of a random legal move on my board, or 0 if
+         *  there is none.  The queen move is drawn uniformly from those
+         *  of the player to move, and then the spear throw from those of
+         *  that queen move. */
+        private int randomMove() {
+            Board board = _board;
+            int n = board.generateQueenMoves(board.turn(), _moves);
+            if (n == 0) {
+                return 0;
+            }
+            int queenMove = _moves[_random.nextInt(n)];
+            int from = Move.codeFrom(queenMove), to = Move.codeTo(queenMove);
+            int k = board.reachableFrom(to, from, _spears);
+            return Move.code(from, to, _spears[_random.nextInt(k)]);
+        }
+
+        /** My copy of the position being searched. */
+        private final Board _board = new Board();
+
+        /** Evaluation of the positions at the ends of my playouts. */
+        private final Evaluator _evaluator = new Evaluator(_weights);
+
+        /** Source of my random choices. */
+        private Random _random;
+
+        /** Number of iterations I have done in the current search. */
+        private long _iterations;
+
+        /** The nodes on the path of the current iteration, by depth. */
+        private final int[] _path = new int[Board.BOARD_SIZE + 1];
+
+        /** Buffer for generated moves. */
+        private final int[] _moves = new int[Board.MAX_MOVES];
+
+        /** Buffer for generated spear throws. */
+        private final int[] _spears = new int[Board.BOARD_SIZE];
+    }
+
+    /** Return the child of NODE with the greatest upper confidence bound
+     *  on its reward (for the player who moves from NODE), or -1 if NODE
+     *  has no children. */
+    private int select(int node) {
+        double logN = log(max(1, _visits[node]));
+        int best = -1;
+        double bestBound = Double.NEGATIVE_INFINITY;
+        for (int c = (int) INTS.getVolatile(_child, node); c >= 0;
+             c = _sibling[c]) {
+            int visits = _visits[c];
+            double rewards = (long) LONGS.getOpaque(_rewards, c);
+            double bound =
+                rewards / REWARD_UNIT / visits
+                + EXPLORATION * sqrt(logN / visits);
+            if (bound > bestBound) {
+                best = c;
+                bestBound = bound;
+            }
+        }
+        return best;
+    }
+
+    /** Return true iff NODE may have another child: it has fewer than
+     *  the progressive widening limit for its visits and fewer than its
+     *  number of legal moves (if known), and the tree has room. */
+    private boolean canWiden(int node) {
+        int limit = 1 + (int) (WIDENING * sqrt(_visits[node]));
+        int children = _numChildren[node];
+        return _size.get() < _move.length && children < limit
+            && (_numLegal[node] < 0 || children < _numLegal[node]);
+    }
+
+    /** Add a new child of NODE for the move with code MOVE, and return
+     *  it, or -1 if the tree is full.  The caller must hold NODE's flag
+     *  in _busy.  The child starts with the virtual loss of the iteration
+     *  adding it. */
+    private int addChild(int node, int move) {
+        int child = newNode(move);
+        if (child < 0) {
+            return -1;
+        }
+        _visits[child] = VIRTUAL_LOSS;
+        _sibling[child] = _child[node];
+        INTS.setVolatile(_child, node, child);
+        _numChildren[node] += 1;
+        return child;
+    }
+
+    /** Return true iff NODE has a child. */
+    private boolean hasChild(int node) {
+        return (int) INTS.getVolatile(_child, node) >= 0;
+    }
+
+    /** Return true iff NODE has a child for the move with code MOVE. */
+    private boolean isChild(int node, int move) {
+        for (int c = (int) INTS.getVolatile(_child, node); c >= 0;
+             c = _sibling[c]) {
+            if (_move[c] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Return a new node for the move with code MOVE, with no children
+     *  or visits, or -1 if the tree is full. */
+    private int newNode(int move) {
+        int node = _size.getAndIncrement();
+        if (node >= _move.length) {
+            return -1;
+        }
+        _move[node] = move;
+        _child[node] = _sibling[node] = -1;
+        _numChildren[node] = 0;
+        _numLegal[node] = -1;
+        _busy[node] = 0;
+        _visits[node] = 0;
+        _rewards[node] = 0;
+        return node;
+    }
+
+    /** Return the code of the most visited move at the root. */
+    private int bestMove() {
+        int best = -1;
+        for (int c = _child[ROOT]; c >= 0; c = _sibling[c]) {
+            if (best < 0 || _visits[c] > _visits[best]) {
+                best = c;
+            }
+        }
+        return _move[best];
+    }
+
+    /** Return the number of milliseconds to spend on a move from BOARD,
+     *  computed as for AI. */
+    private long moveBudget(Board board) {
+        long remaining = _gameTime - _timeUsed;
+        int movesLeft = max(1, board.numEmpty() / 2);
+        long budget = min(_moveTime, remaining / movesLeft);
+        return max(1, budget - budget / SAFETY_MARGIN);
+    }
+
+    /** Allocate my tree. */
+    private void allocate() {
+        int nodes = (int) min((long) _treeSize * (1 << 20) / NODE_BYTES,
+                              Integer.MAX_VALUE - 8);
+        nodes = max(nodes, 2);
+        _move = new int[nodes];
+        _child = new int[nodes];
+        _sibling = new int[nodes];
+        _numChildren = new int[nodes];
+        _numLegal = new int[nodes];
+        _busy = new int[nodes];
+        _visits = new int[nodes];
+        _rewards = new long[nodes];
+    }
+
+    /** Atomic access to the elements of int arrays. */
+    private static final VarHandle INTS =
+        MethodHandles.arrayElementVarHandle(int[].class);
+
+    /** Atomic access to the elements of long arrays. */
+    private static final VarHandle LONGS =
+        MethodHandles.arrayElementVarHandle(long[].class);
+
+    /** The root node. */
+    private static final int ROOT = 0;
+
+    /** Bytes per node of the tree. */
+    private static final int NODE_BYTES = 7 * Integer.BYTES + Long.BYTES;
+
+    /** Rewards are kept in units of 1/REWARD_UNIT. */
+    private static final double REWARD_UNIT = 1 << 24;
+
+    /** Number of visits (with no reward) added to a node while an
+     *  iteration passes through it. */
+    private static final int VIRTUAL_LOSS = 1;
+
+    /** The exploration constant of UCB1. */
+    private static final double EXPLORATION = 0.2;
+
+    /** The coefficient of the progressive widening limit. */
+    private static final double WIDENING = 1.0;
+
+    /** Number of random moves compared when a node widens. */
+    private static final int SAMPLES = 4;
+
+    /** Evaluator points by which white's advantage must change to change
+     *  the estimated reward by a factor of e (in odds): about three
+     *  squares of territory. */
+    private static final double EVAL_SCALE = 30.0;
+
+    /** Number of iterations between checks of the clock. */
+    private static final int CLOCK_INTERVAL = 64;
+
+    /** The fraction (1/SAFETY_MARGIN) of each move's time held back. */
+    private static final int SAFETY_MARGIN = 10;
+
+    /** Limits on the time for one move and for a game, in
+     *  milliseconds. */
+    private long _moveTime = AI.DEFAULT_MOVE_TIME,
+        _gameTime = AI.DEFAULT_GAME_TIME;
+
+    /** Milliseconds spent on my moves so far in this game. */
+    private long _timeUsed;
+
+    /** Number of random moves in each playout. */
+    private int _playoutLength = DEFAULT_PLAYOUT_LENGTH;
+
+    /** Size of my tree, in megabytes. */
+    private int _treeSize = DEFAULT_TREE_SIZE;
+
+    /** Weights of the static evaluation. */
+    private int[] _weights = Evaluator.DEFAULT_WEIGHTS.clone();
+
+    /** Number of my workers. */
+    private int _threads = 1;
+
+    /** My workers; the first runs in the thread calling search. */
+    private Worker[] _workers;
+
+    /** Threads running my other workers, or null if there are none. */
+    private ExecutorService _pool;
+
+    /** Seed for the random numbers of the next search. */
+    private long _seed;
+
+    /** True when the workers of the current search must stop. */
+    private volatile boolean _stop;
+
+    /** Number of nodes allocated in the tree (possibly more than its
+     *  capacity, if it is full). */
+    private final AtomicInteger _size = new AtomicInteger();
+
+    /** _move[N] is the code of the move leading to node N. */
+    private int[] _move;
+
+    /** _child[N] is the most recently added child of node N, or -1. */
+    private int[] _child;
+
+    /** _sibling[N] is the next child of the parent of node N, or -1. */
+    private int[] _sibling;
+
+    /** _numChildren[N] is the number of children of node N. */
+    private int[] _numChildren;
+
+    /** _numLegal[N] is the number of legal moves from node N, or -1 if
+     *  not yet known. */
+    private int[] _numLegal;
+
+    /** _busy[N] is 1 while a worker is adding a child to node N. */
+    private int[] _busy;
+
+    /** _visits[N] is the number of iterations that passed through node
+     *  N, including those still under way (as virtual losses). */
+    private int[] _visits;
+
+    /** _rewards[N] is the total reward, in 1/REWARD_UNIT, of the
+     *  finished iterations through node N for the player who made the
+     *  move leading to it. */
+    private long[] _rewards;
+
+    /** The legal moves at the root, best first (see rankRoot). */
+    private final int[] _rootOrder = new int[Board.MAX_MOVES];
+
+    /** Sort keys used by rankRoot: negated score in the high word and
+     *  move code in the low word. */
+    private final long[] _rootKeys = new long[Board.MAX_MOVES];
+}
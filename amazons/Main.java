@@ -3,8 +3,10 @@ package amazons;
 import java.util.List;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.Reader;
 
 import static amazons.Utils.error;
 
@@ -15,14 +17,57 @@ import ucb.util.CommandArgs;
  */
 public class Main {
 
-    /** The main program.  ARGS may contain the option --display. */
+    /** The main program.  ARGS may contain the option --display,
+     *  --hash=MB to set the size of the AI's transposition table,
+     *  --movetime=SECS and --gametime=SECS to limit the AI's thinking
+     *  time for one move and for all its moves in a game, --split to
+     *  have the AI search queen moves and spear throws as separate
+     *  plies, and --beam=K and --reduce=N to limit the AI's searches to
+     *  K moves per position and reduce the depth of moves after the
+     *  first N (0 for no limit or reductions), --reducemore=M to reduce
+     *  moves after the first M by two levels (0 never; 4N by default),
+     *  and --weights=FILE to
+     *  read the weights of the AI's evaluation from FILE (see
+     *  Evaluator), --evalcache=MB to set the size of the AI's cache
+     *  of evaluations (0 for none), --threads=N to have the AI
+     *  search with N threads, --rootsplit to have those threads
+     *  divide the moves at the root rather than all searching the
+     *  same tree (not with --split), --ponder to have it search
+     *  during its opponent's turns, and --prove=N to have it try to
+     *  prove the result once at most N empty squares can still be
+     *  filled (0 never), and --book=FILE to have it play from the
+     *  opening book in FILE (see BookBuilder).
+     *  --engine=mcts has the automated player use Monte Carlo
+     *  tree search (see MCTSPlayer) rather than alpha-beta search
+     *  (--engine=alphabeta, the default), and --playout=N sets the length
+     *  of its random playouts.  Time limits, weights, and the number of
+     *  threads apply to both engines.
+     *  --bench runs the bench suite (see Bench) with the alpha-beta
+     *  engine, as configured by the other options, searching each
+     *  position Bench.DEFAULT_DEPTH moves deep, prints the results, and
+     *  exits. */
     public static void main(String... args) {
 
         CommandArgs options =
-                new CommandArgs("--display --log={0,1} --={0,2}", args);
+                new CommandArgs("--display --log={0,1} --hash={0,1}"
+                                + " --movetime={0,1} --gametime={0,1}"
+                                + " --split --beam={0,1} --reduce={0,1}"
+                                + " --reducemore={0,1}"
+                                + " --weights={0,1} --evalcache={0,1}"
+                                + " --threads={0,1} --rootsplit"
+                                + " --ponder --prove={0,1} --book={0,1}"
+                                + " --engine={0,1} --playout={0,1}"
+                                + " --bench --={0,2}", args);
         if (!options.ok()) {
             System.err.println("Usage: java amazons.Main [--display]"
-                    + " [--log=FILE] [INPUT [OUTPUT]]");
+                    + " [--log=FILE] [--hash=MB] [--movetime=SECS]"
+                    + " [--gametime=SECS] [--split] [--beam=K]"
+                    + " [--reduce=N] [--reducemore=M]"
+                    + " [--weights=FILE] [--evalcache=MB]"
+                    + " [--threads=N] [--rootsplit] [--ponder]"
+                    + " [--prove=N] [--book=FILE]"
+                    + " [--engine=alphabeta|mcts] [--playout=N]"
+                    + " [--bench] [INPUT [OUTPUT]]");
             System.exit(1);
         }
 
@@ -43,6 +88,10 @@ public class Main {
 
         Controller control = getController(options);
         System.out.println("Amazons 61B, version 1.0");
+        if (options.contains("--bench")) {
+            control.bench(Bench.DEFAULT_DEPTH, 0);
+            System.exit(0);
+        }
 
         try {
             control.play();
@@ -83,6 +132,102 @@ public class Main {
             }
         }
 
-        return new Controller(view, log, reporter, manualPlayer, new AI());
+        AI ai = new AI();
+        if (options.contains("--hash")) {
+            ai.setTableSize(intOption(options, "--hash", 1));
+        }
+        if (options.contains("--evalcache")) {
+            ai.setEvalCacheSize(intOption(options, "--evalcache", 0));
+        }
+        if (options.contains("--threads")) {
+            ai.setThreads(intOption(options, "--threads", 1));
+        }
+        if (options.contains("--rootsplit") && options.contains("--split")) {
+            throw error("--rootsplit cannot be combined with --split");
+        }
+        ai.setRootSplit(options.contains("--rootsplit"));
+        ai.setPonder(options.contains("--ponder"));
+        if (options.contains("--prove")) {
+            ai.setProofThreshold(intOption(options, "--prove", 0));
+        }
+        if (options.contains("--book")) {
+            try {
+                ai.setBook(OpeningBook.open(options.getFirst("--book")));
+            } catch (IOException excp) {
+                throw error("Could not read opening book");
+            }
+        }
+        long moveTime = AI.DEFAULT_MOVE_TIME, gameTime = AI.DEFAULT_GAME_TIME;
+        if (options.contains("--movetime")) {
+            moveTime = intOption(options, "--movetime", 1) * 1000L;
+        }
+        if (options.contains("--gametime")) {
+            gameTime = intOption(options, "--gametime", 1) * 1000L;
+        }
+        ai.setTimeLimits(moveTime, gameTime);
+        ai.setSplitPly(options.contains("--split"));
+        int beamWidth = 0, reduceAfter = AI.DEFAULT_REDUCE_AFTER;
+        if (options.contains("--beam")) {
+            beamWidth = intOption(options, "--beam", 0);
+        }
+        if (options.contains("--reduce")) {
+            reduceAfter = intOption(options, "--reduce", 0);
+        }
+        int reduceMoreAfter = 4 * reduceAfter;
+        if (options.contains("--reducemore")) {
+            reduceMoreAfter = intOption(options, "--reducemore", 0);
+        }
+        ai.setSelectivity(beamWidth, reduceAfter, reduceMoreAfter);
+        Evaluator evaluator = new Evaluator();
+        if (options.contains("--weights")) {
+            String name = options.getFirst("--weights");
+            try (Reader weights = new FileReader(name)) {
+                evaluator = Evaluator.read(weights);
+            } catch (IOException excp) {
+                throw error("Could not read weights file");
+            }
+        }
+        ai.setEvaluator(evaluator);
+
+        Player autoPlayer;
+        String engine =
+            options.contains("--engine") ? options.getFirst("--engine")
+            : "alphabeta";
+        switch (engine) {
+        case "alphabeta":
+            autoPlayer = ai;
+            break;
+        case "mcts":
+            MCTSPlayer mcts = new MCTSPlayer();
+            mcts.setTimeLimits(moveTime, gameTime);
+            mcts.setEvaluator(evaluator);
+            if (options.contains("--threads")) {
+                mcts.setThreads(intOption(options, "--threads", 1));
+            }
+            if (options.contains("--playout")) {
+                mcts.setPlayoutLength(intOption(options, "--playout", 0));
+            }
+            autoPlayer = mcts;
+            break;
+        default:
+            throw error("unknown engine: %s", engine);
+        }
+
+        return new Controller(view, log, reporter, manualPlayer, autoPlayer);
+    }
+
+    /** Return the value of option KEY in OPTIONS, which must be an
+     *  integer no less than MIN (0 or 1). */
+    private static int intOption(CommandArgs options, String key, int min) {
+        try {
+            int value = Integer.parseInt(options.getFirst(key));
+            if (value >= min) {
+                return value;
+            }
+        } catch (NumberFormatException excp) {
+            /* Fall through. */
+        }
+        throw error("%s must be a %s integer", key,
+                    min > 0 ? "positive" : "non-negative");
     }
 }
@@ -46,6 +46,12 @@ final class Move {
         return MOVES[from.index()][to.index()][spear.index()];
     }
 
+    /** Return the unique Move whose code (see code(int, int, int)) is
+     *  CODE. */
+    static Move mv(int code) {
+        return mv(sq(codeFrom(code)), sq(codeTo(code)), sq(codeSpear(code)));
+    }
+
     /** Return the Move denoted by STR, if STR denotes a move with
      *  valid syntax in which the piece move and spear throw are proper
      *  queen moves, and null otherwise. */
@@ -70,6 +76,48 @@ final class Move {
         return _moveMatcher.matches();
     }
 
+    /** Return the compact integer form of the move from the square with
+     *  index FROM to TO, throwing a spear to SPEAR.  Codes allow move
+     *  lists to be kept in int arrays without creating Moves. */
+    static int code(int from, int to, int spear) {
+        return from | (to << CODE_BITS) | (spear << (2 * CODE_BITS));
+    }
+
+    /** Return the index of the starting square of the move coded CODE. */
+    static int codeFrom(int code) {
+        return code & CODE_MASK;
+    }
+
+    /** Return the index of the destination square of the move coded
+     *  CODE. */
+    static int codeTo(int code) {
+        return (code >>> CODE_BITS) & CODE_MASK;
+    }
+
+    /** Return the index of the spear square of the move coded CODE. */
+    static int codeSpear(int code) {
+        return code >>> (2 * CODE_BITS);
+    }
+
+    /** Return the code of the image under symmetry SYM (see
+     *  Square.transform) of the move coded CODE. */
+    static int transformCode(int sym, int code) {
+        return code(Square.transform(sym, codeFrom(code)),
+                    Square.transform(sym, codeTo(code)),
+                    Square.transform(sym, codeSpear(code)));
+    }
+
+    /** Return my image under symmetry SYM (see Square.transform). */
+    Move transform(int sym) {
+        return mv(_from.transform(sym), _to.transform(sym),
+                  _spear.transform(sym));
+    }
+
+    /** Return my code. */
+    int code() {
+        return code(_from.index(), _to.index(), _spear.index());
+    }
+
     @Override
     public String toString() {
         return _str;
@@ -81,6 +129,11 @@ final class Move {
         _str = String.format("%s-%s(%s)", from, to, spear);
     }
 
+    /** Number of bits used for each square index in a move code. */
+    private static final int CODE_BITS = 7;
+    /** Mask extracting one square index from a move code. */
+    private static final int CODE_MASK = (1 << CODE_BITS) - 1;
+
     /** The cache of all Moves created. */
     private static final Move[][][] MOVES = new Move[100][100][100];
 
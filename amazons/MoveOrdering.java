@@ -0,0 +1,160 @@
+package amazons;
+
+import java.util.Arrays;
+
+/** Orders the moves at a node of an alpha-beta search so that those most
+ *  likely to cause a cutoff come first.  The order is: the move of the
+ *  previous principal variation, the transposition table's best move,
+ *  the (up to two) killer moves recorded at the same ply, and then the
+ *  remaining moves by decreasing history score.  The history score of
+ *  a move is the sum of the credit earned by its queen move (from-to)
+ *  and by its spear throw (to-spear) when they caused cutoffs.  All
+ *  state is kept in int arrays, and sorting is done on primitive
+ *  keys, so ordering allocates nothing.
+ *  @author Anastasia
+ */
+final class MoveOrdering {
+
+    /** Number of killer moves kept per ply. */
+    static final int KILLERS = 2;
+
+    /** An ordering for searches at most MAXPLY plies deep. */
+    MoveOrdering(int maxPly) {
+        _killers = new int[maxPly + 1][KILLERS];
+    }
+
+    /** Forget all killers and history. */
+    void clear() {
+        for (int[] killers : _killers) {
+            Arrays.fill(killers, 0);
+        }
+        Arrays.fill(_queenHistory, 0);
+        Arrays.fill(_spearHistory, 0);
+    }
+
+    /** Prepare for a new search: forget killers and reduce the weight
+     *  of the history collected by earlier searches. */
+    void newSearch() {
+        for (int[] killers : _killers) {
+            Arrays.fill(killers, 0);
+        }
+        ageHistory();
+    }
+
+    /** Reorder the first N move codes in MOVES, generated at a node
+     *  PLY plies from the root, as described in the class comment.
+     *  PVMOVE and HASHMOVE are the principal-variation and table moves
+     *  (0 if none). */
+    void order(int[] moves, int n, int ply, int pvMove, int hashMove) {
+        int k = 0;
+        k = bringForward(pvMove, moves, k, n);
+        k = bringForward(hashMove, moves, k, n);
+        for (int killer : _killers[ply]) {
+            k = bringForward(killer, moves, k, n);
+        }
+        for (int i = k; i < n; i += 1) {
+            int m = moves[i];
+            _keys[i] = ((long) -history(m) << 32) | (m & 0xffffffffL);
+        }
+        Arrays.sort(_keys, k, n);
+        for (int i = k; i < n; i += 1) {
+            moves[i] = (int) _keys[i];
+        }
+    }
+
+    /** Reorder the first N queen-move codes in MOVES (as produced by
+     *  BOARD.generateQueenMoves) for a search that treats queen moves
+     *  and spear throws as separate plies.  The queen move of HASHMOVE
+     *  (if not 0) comes first, and the rest follow by decreasing number
+     *  of squares the moved queen would reach: a cheap estimate of a
+     *  queen move's value that also favors those leaving many spear
+     *  throws. */
+    void orderQueenMoves(Board board, int[] moves, int n, int hashMove) {
+        int k = 0;
+        if (hashMove != 0) {
+            k = bringForward(Move.code(Move.codeFrom(hashMove),
+                                       Move.codeTo(hashMove), 0),
+                             moves, k, n);
+        }
+        for (int i = k; i < n; i += 1) {
+            int m = moves[i];
+            int mobility = board.numReachable(Move.codeTo(m),
+                                              Move.codeFrom(m));
+            _keys[i] = ((long) -mobility << 32) | (m & 0xffffffffL);
+        }
+        Arrays.sort(_keys, k, n);
+        for (int i = k; i < n; i += 1) {
+            moves[i] = (int) _keys[i];
+        }
+    }
+
+    /** Record that MOVE caused a cutoff at ply PLY in a search with
+     *  DEPTH levels remaining. */
+    void cutoff(int move, int ply, int depth) {
+        int[] killers = _killers[ply];
+        if (killers[0] != move) {
+            System.arraycopy(killers, 0, killers, 1, KILLERS - 1);
+            killers[0] = move;
+        }
+        int from = Move.codeFrom(move), to = Move.codeTo(move),
+            spear = Move.codeSpear(move);
+        int credit = depth * depth;
+        _queenHistory[from * Board.BOARD_SIZE + to] += credit;
+        _spearHistory[to * Board.BOARD_SIZE + spear] += credit;
+        if (_queenHistory[from * Board.BOARD_SIZE + to] > MAX_HISTORY
+            || _spearHistory[to * Board.BOARD_SIZE + spear] > MAX_HISTORY) {
+            ageHistory();
+        }
+    }
+
+    /** Return the history score of MOVE. */
+    int history(int move) {
+        int from = Move.codeFrom(move), to = Move.codeTo(move),
+            spear = Move.codeSpear(move);
+        return _queenHistory[from * Board.BOARD_SIZE + to]
+            + _spearHistory[to * Board.BOARD_SIZE + spear];
+    }
+
+    /** Halve all history scores. */
+    private void ageHistory() {
+        for (int i = 0; i < _queenHistory.length; i += 1) {
+            _queenHistory[i] >>= 1;
+            _spearHistory[i] >>= 1;
+        }
+    }
+
+    /** If MOVE (non-zero) is among MOVES[K .. N-1], swap it into
+     *  MOVES[K] and return K + 1.  Otherwise return K. */
+    private static int bringForward(int move, int[] moves, int k, int n) {
+        if (move == 0) {
+            return k;
+        }
+        for (int i = k; i < n; i += 1) {
+            if (moves[i] == move) {
+                moves[i] = moves[k];
+                moves[k] = move;
+                return k + 1;
+            }
+        }
+        return k;
+    }
+
+    /** Bound on a history entry, beyond which all entries are halved,
+     *  so that sums and sort keys cannot overflow. */
+    private static final int MAX_HISTORY = 1 << 28;
+
+    /** Killer moves, by ply, most recent first. */
+    private final int[][] _killers;
+
+    /** Cutoff credit of queen moves, indexed by FROM * BOARD_SIZE + TO. */
+    private final int[] _queenHistory = new int[Board.BOARD_SIZE
+                                                * Board.BOARD_SIZE];
+
+    /** Cutoff credit of spear throws, indexed by TO * BOARD_SIZE + SPEAR. */
+    private final int[] _spearHistory = new int[Board.BOARD_SIZE
+                                                * Board.BOARD_SIZE];
+
+    /** Sort keys: negated history score in the high word and move code in
+     *  the low word. */
+    private final long[] _keys = new long[Board.MAX_MOVES];
+}
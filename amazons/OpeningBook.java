@@ -0,0 +1,127 @@
+package amazons;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static amazons.Utils.error;
+
+/** A book of opening moves, read from a binary file mapped into memory,
+ *  so that opening it parses nothing and a lookup is a binary search
+ *  over the mapped bytes.  The file (see write) is a header of HEADER
+ *  bytes (the long MAGIC and the int number of entries), followed by
+ *  entries of ENTRY bytes, sorted by key: the canonical key of a
+ *  position (a long) and the code of its best move (an int), all
+ *  big-endian.
+ *  <p>The board has eight symmetries (the rotations and reflections of
+ *  the square), and the starting position has all of them, so the
+ *  book stores each position once, under its canonical key: the least
+ *  of the Zobrist keys of its eight images (see Board.canonicalHash).
+ *  Its move is stored as played in the image with that key, and is
+ *  mapped back to the position looked up (see Square.transform).
+ *  Books are made by BookBuilder.
+ *  @author Anastasia
+ */
+final class OpeningBook {
+
+    /** Return the book in the file named FILENAME. */
+    static OpeningBook open(String fileName) throws IOException {
+        try (FileChannel file = FileChannel.open(Paths.get(fileName),
+                                                 StandardOpenOption.READ)) {
+            MappedByteBuffer data =
+                file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+            if (file.size() < HEADER || data.getLong(0) != MAGIC) {
+                throw error("%s is not an opening book", fileName);
+            }
+            int size = data.getInt(Long.BYTES);
+            if (size < 0 || file.size() != HEADER + (long) size * ENTRY) {
+                throw error("opening book %s is damaged", fileName);
+            }
+            return new OpeningBook(data, size);
+        }
+    }
+
+    /** A book of the SIZE entries in DATA, in the format of the file. */
+    private OpeningBook(ByteBuffer data, int size) {
+        _data = data;
+        _size = size;
+    }
+
+    /** Return the number of positions in this book. */
+    int size() {
+        return _size;
+    }
+
+    /** Return the code of the book move from BOARD, or 0 if BOARD is not
+     *  in this book, or the move found is not legal there (because of a
+     *  collision of keys). */
+    int probe(Board board) {
+        int sym = board.canonicalSymmetry();
+        long key = board.hash(sym);
+        int lo = 0, hi = _size - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            long k = _data.getLong(HEADER + mid * ENTRY);
+            if (k < key) {
+                lo = mid + 1;
+            } else if (k > key) {
+                hi = mid - 1;
+            } else {
+                int move = Move.transformCode(Square.inverse(sym),
+                                              _data.getInt(HEADER + mid * ENTRY
+                                                           + Long.BYTES));
+                return board.isLegal(Move.mv(move)) ? move : 0;
+            }
+        }
+        return 0;
+    }
+
+    /** Write the N entries whose canonical keys (see Board.canonicalHash)
+     *  are KEYS[0 .. N-1] and
+     *  whose moves (in canonical orientation) are MOVES[0 .. N-1] as a
+     *  book in the file named FILENAME.  The keys must be distinct. */
+    static void write(String fileName, long[] keys, int[] moves, int n)
+        throws IOException {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i += 1) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(keys[a], keys[b]));
+        ByteBuffer data = ByteBuffer.allocate(HEADER + n * ENTRY);
+        data.order(ByteOrder.BIG_ENDIAN);
+        data.putLong(MAGIC).putInt(n).putInt(0);
+        for (int i : order) {
+            data.putLong(keys[i]).putInt(moves[i]);
+        }
+        data.flip();
+        Path path = Paths.get(fileName);
+        try (FileChannel file = FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                file.write(data);
+            }
+        }
+    }
+
+    /** The first long of a book file. */
+    private static final long MAGIC = 0x414d5a424f4f4b31L;
+
+    /** Number of bytes in the header of a book file. */
+    private static final int HEADER = 16;
+
+    /** Number of bytes in an entry of a book file. */
+    private static final int ENTRY = Long.BYTES + Integer.BYTES;
+
+    /** The contents of the book file. */
+    private final ByteBuffer _data;
+
+    /** Number of entries in the book. */
+    private final int _size;
+}
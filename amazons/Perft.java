@@ -0,0 +1,123 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A counter of the positions reachable from a position in a given
+ *  number of moves (perft), used to check the move generator against
+ *  known counts and to measure its speed.  From the initial position,
+ *  there are 2,176 positions after one move and 4,307,152 after two.
+ *  The count goes through generateMoves, makeMove, and undo, as the
+ *  searches do.  At the last move, the moves are only generated and
+ *  counted, without being made ("bulk counting").  The parallel count
+ *  divides the moves from the root among threads, each taking the next
+ *  move not yet taken when it finishes one, on its own Board.
+ *  @author Anastasia
+ */
+public class Perft {
+
+    /** Count positions as given by ARGS: the depth, and optionally the
+     *  number of threads (default 1) and moves to make from the initial
+     *  position first.  Prints the count, time, and rate for each depth
+     *  from 1 to the depth given. */
+    public static void main(String... args) {
+        if (args.length < 1) {
+            System.err.println("Usage: java amazons.Perft DEPTH"
+                               + " [THREADS [MOVE ...]]");
+            System.exit(1);
+        }
+        int depth = Integer.parseInt(args[0]);
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+        Board board = new Board();
+        for (int i = 2; i < args.length; i += 1) {
+            Move move = Move.mv(args[i]);
+            if (move == null || !board.isLegal(move)) {
+                System.err.printf("Illegal move: %s%n", args[i]);
+                System.exit(1);
+            }
+            board.makeMove(move);
+        }
+        for (int d = 1; d <= depth; d += 1) {
+            long start = System.nanoTime();
+            long nodes = perft(board, d, threads);
+            long nanos = Math.max(System.nanoTime() - start, 1);
+            System.out.printf("perft(%d) = %d  %.3f s  %.0f nodes/s%n", d,
+                              nodes, nanos / 1e9, nodes * 1e9 / nanos);
+        }
+    }
+
+    /** Return the number of positions reachable in DEPTH moves from
+     *  BOARD, which is unchanged, counting on THREADS threads.  Lines of
+     *  play that end the game sooner are not counted. */
+    static long perft(Board board, int depth, int threads) {
+        if (threads <= 1 || depth <= 1) {
+            return new Perft().count(new Board(board), depth);
+        }
+        int[] moves = new int[Board.MAX_MOVES];
+        int n = board.generateMoves(moves);
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "perft");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Long>> parts = new ArrayList<>();
+            for (int t = 0; t < threads; t += 1) {
+                parts.add(pool.submit(() -> {
+                    Perft counter = new Perft();
+                    Board copy = new Board(board);
+                    long nodes = 0;
+                    for (int i = next.getAndIncrement(); i < n;
+                         i = next.getAndIncrement()) {
+                        copy.makeMove(moves[i]);
+                        nodes += counter.count(copy, depth - 1);
+                        copy.undo();
+                    }
+                    return nodes;
+                }));
+            }
+            long total = 0;
+            for (Future<Long> part : parts) {
+                total += part.get();
+            }
+            return total;
+        } catch (InterruptedException | ExecutionException excp) {
+            throw new Error("perft thread failed", excp);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /** Return the number of positions reachable in DEPTH moves from
+     *  BOARD.  BOARD is changed only by making and undoing moves. */
+    long count(Board board, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        int ply = board.numMoves();
+        if (_moves[ply] == null) {
+            _moves[ply] = new int[Board.MAX_MOVES];
+        }
+        int[] moves = _moves[ply];
+        int n = board.generateMoves(moves);
+        if (depth == 1) {
+            return n;
+        }
+        long nodes = 0;
+        for (int i = 0; i < n; i += 1) {
+            board.makeMove(moves[i]);
+            nodes += count(board, depth - 1);
+            board.undo();
+        }
+        return nodes;
+    }
+
+    /** Move buffers, indexed by number of moves made on the board. */
+    private final int[][] _moves = new int[Board.BOARD_SIZE + 1][];
+}
@@ -36,6 +36,12 @@ abstract class Player {
      *  is not null. */
     abstract String myMove();
 
+    /** Stop any thinking I am doing in the background (such as pondering
+     *  during my opponent's turn).  Called when my controller stops
+     *  using me or starts a new game.  Does nothing by default. */
+    void stopThinking() {
+    }
+
     /** My Controller. */
     protected Controller _controller;
     /** The Piece I play (WHITE or BLACK). */
@@ -0,0 +1,360 @@
+package amazons;
+
+import static amazons.Piece.*;
+
+/** A solver for positions near the end of a game, using depth-first
+ *  proof-number search (df-pn).  Rather than estimating values to a
+ *  fixed depth, it tries to prove that the player to move wins or
+ *  loses.  Each node has a proof number, the least number of leaves
+ *  whose proof would prove that the player to move there wins, and a
+ *  disproof number, the least number whose disproof would prove that
+ *  player loses.  In negamax form, the proof number of a node is the
+ *  least disproof number of its children and its disproof number the
+ *  sum of their proof numbers, so the search always expands the child
+ *  whose disproof looks cheapest.  It goes deeper while the numbers of
+ *  the node stay below thresholds passed down from its parent, and
+ *  keeps them in a table of fixed size, so its memory use is bounded
+ *  however long it runs; entries that do not fit replace those that
+ *  took the least work to find, and are found again when needed.  Since
+ *  every move adds a spear, no position repeats along a line of play,
+ *  and the search needs no handling of cycles.  A position is a leaf
+ *  once the player to move has no move, or once the filling numbers of
+ *  its regions (see Filler) decide it.
+ *  @author Anastasia
+ */
+final class ProofSearch {
+
+    /** Results of prove: a win or loss for the player to move, or no
+     *  proof either way. */
+    static final int WIN = 1, LOSS = -1, UNKNOWN = 0;
+
+    /** A solver whose table occupies about MEGABYTES megabytes (rounded
+     *  down to a power of two entries, and at least two entries). */
+    ProofSearch(int megabytes) {
+        long entries = (long) megabytes * (1 << 20) / ENTRY_BYTES;
+        entries = Long.highestOneBit(Math.max(entries, 2));
+        entries = Math.min(entries, 1 << 30);
+        _keys = new long[(int) entries];
+        _proof = new int[(int) entries];
+        _disproof = new int[(int) entries];
+        _work = new int[(int) entries];
+        _mask = (int) entries - 2;
+    }
+
+    /** Try to prove the result of BOARD, which is unchanged, for the
+     *  player to move, stopping at time DEADLINE (as from
+     *  System.currentTimeMillis).  Return WIN, LOSS, or UNKNOWN (if
+     *  time ran out).  Afterwards, line gives the line of play found,
+     *  and bestMove its first move.  The results of earlier calls remain
+     *  in the table, where later calls may use them. */
+    int prove(Board board, long deadline) {
+        Board b = new Board(board);
+        _deadline = deadline;
+        _stopped = false;
+        _nodes = 0;
+        _rootPly = b.numMoves();
+        mid(b, INFTY, INFTY);
+        int result = UNKNOWN;
+        int e = lookup(b.canonicalHash());
+        if (e >= 0 && _proof[e] == 0) {
+            result = WIN;
+        } else if (e >= 0 && _disproof[e] == 0) {
+            result = LOSS;
+        }
+        _lineLength = 0;
+        if (result != UNKNOWN) {
+            findLine(b);
+        }
+        return result;
+    }
+
+    /** Return the line of play found by the last prove that finished
+     *  with a proof, as move codes starting from its position: moves
+     *  that keep the win for the winner, against the replies of the
+     *  loser that took the most work to refute.  The line ends at the
+     *  end of the game, or earlier where the table lacks the entries to
+     *  continue it.  Empty if the last prove found no proof. */
+    int[] line() {
+        int[] result = new int[_lineLength];
+        System.arraycopy(_line, 0, result, 0, _lineLength);
+        return result;
+    }
+
+    /** Return the first move of line(), or 0 if there is none. */
+    int bestMove() {
+        return _lineLength > 0 ? _line[0] : 0;
+    }
+
+    /** Return the number of nodes visited by the last prove. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Search BOARD until its proof number reaches THPROOF or its
+     *  disproof number reaches THDISPROOF, or time runs out, and record
+     *  its numbers in the table and in _lastProof and _lastDisproof.
+     *  The numbers of the children are read from the table once, and
+     *  then kept up to date from the searches of the children, so that
+     *  the search goes on even if their entries are replaced.  BOARD is
+     *  changed only by making and undoing moves. */
+    private void mid(Board board, int thProof, int thDisproof) {
+        long start = _nodes;
+        long key = board.canonicalHash();
+        if (outOfTime()) {
+            return;
+        }
+        int verdict = verdict(board);
+        if (verdict != UNKNOWN) {
+            _lastProof = verdict == WIN ? 0 : INFTY;
+            _lastDisproof = verdict == WIN ? INFTY : 0;
+            store(key, _lastProof, _lastDisproof, 1);
+            return;
+        }
+
+        int ply = board.numMoves() - _rootPly;
+        if (_moves[ply] == null) {
+            _moves[ply] = new int[Board.MAX_MOVES];
+            _childKeys[ply] = new long[Board.MAX_MOVES];
+            _childProof[ply] = new int[Board.MAX_MOVES];
+            _childDisproof[ply] = new int[Board.MAX_MOVES];
+        }
+        int[] moves = _moves[ply];
+        long[] keys = _childKeys[ply];
+        int[] proofs = _childProof[ply], disproofs = _childDisproof[ply];
+        int n = board.generateMoves(moves);
+        for (int i = 0; i < n; i += 1) {
+            board.makeMove(moves[i]);
+            keys[i] = board.canonicalHash();
+            board.undo();
+            int e = lookup(keys[i]);
+            proofs[i] = e < 0 ? 1 : _proof[e];
+            disproofs[i] = e < 0 ? 1 : _disproof[e];
+        }
+
+        while (true) {
+            int proof = INFTY, secondProof = INFTY;
+            long sum = 0;
+            boolean won = false;
+            int best = 0, bestProof = 0;
+            for (int i = 0; i < n; i += 1) {
+                int childProof = proofs[i], childDisproof = disproofs[i];
+                if (childDisproof < proof) {
+                    secondProof = proof;
+                    proof = childDisproof;
+                    best = i;
+                    bestProof = childProof;
+                } else if (childDisproof < secondProof) {
+                    secondProof = childDisproof;
+                }
+                sum += childProof;
+                won |= childProof == INFTY;
+            }
+            int dis = won ? INFTY : (int) Math.min(sum, INFTY - 1);
+            if (proof >= thProof || dis >= thDisproof || _stopped) {
+                store(key, proof, dis, (int) Math.min(_nodes - start,
+                                                      Integer.MAX_VALUE));
+                _lastProof = proof;
+                _lastDisproof = dis;
+                return;
+            }
+            long childTh = (long) thDisproof - dis + bestProof;
+            board.makeMove(moves[best]);
+            mid(board, (int) Math.min(childTh, INFTY),
+                (int) Math.min(thProof, (long) secondProof + 1));
+            board.undo();
+            if (!_stopped) {
+                for (int i = 0; i < n; i += 1) {
+                    if (keys[i] == keys[best]) {
+                        proofs[i] = _lastProof;
+                        disproofs[i] = _lastDisproof;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Return WIN or LOSS if BOARD is decided for the player to move,
+     *  because that player has no move or because the regions of BOARD
+     *  hold the queens of only one side each and their filling numbers
+     *  show who runs out of moves first.  Otherwise return UNKNOWN. */
+    private int verdict(Board board) {
+        if (board.winner() != EMPTY) {
+            return LOSS;
+        }
+        board.computeRegions(_regions);
+        if (_regions.numContested() > 0) {
+            return UNKNOWN;
+        }
+        int mover = board.turn() == WHITE ? Regions.WHITE_ONLY
+            : Regions.BLACK_ONLY;
+        int myLower, myUpper, theirLower, theirUpper;
+        myLower = myUpper = theirLower = theirUpper = 0;
+        for (int r = 0; r < _regions.count(); r += 1) {
+            if (_regions.kind(r) == Regions.DEAD) {
+                continue;
+            }
+            long emptyLo = _regions.emptyLo(r), emptyHi = _regions.emptyHi(r);
+            int lower = _filler.solve(emptyLo, emptyHi,
+                                      _regions.lo(r) & ~emptyLo,
+                                      _regions.hi(r) & ~emptyHi);
+            if (_regions.kind(r) == mover) {
+                myLower += lower;
+                myUpper += _filler.upper();
+            } else {
+                theirLower += lower;
+                theirUpper += _filler.upper();
+            }
+        }
+        if (myLower > theirUpper) {
+            return WIN;
+        } else if (myUpper <= theirLower) {
+            return LOSS;
+        }
+        return UNKNOWN;
+    }
+
+    /** Fill _line with the line of play from the proven position
+     *  BOARD (see line), leaving BOARD unchanged. */
+    private void findLine(Board board) {
+        int[] moves = new int[Board.MAX_MOVES];
+        while (_lineLength < _line.length && board.winner() == EMPTY) {
+            int e = lookup(board.canonicalHash());
+            if (e < 0 || (_proof[e] != 0 && _disproof[e] != 0)) {
+                break;
+            }
+            boolean winning = _proof[e] == 0;
+            int n = board.generateMoves(moves);
+            int best = 0, bestWork = -1;
+            for (int i = 0; i < n; i += 1) {
+                board.makeMove(moves[i]);
+                int c = lookup(board.canonicalHash());
+                board.undo();
+                if (c < 0) {
+                    continue;
+                }
+                if (winning && _disproof[c] == 0) {
+                    best = moves[i];
+                    break;
+                } else if (!winning && _proof[c] == 0
+                           && _work[c] > bestWork) {
+                    best = moves[i];
+                    bestWork = _work[c];
+                }
+            }
+            if (best == 0) {
+                break;
+            }
+            _line[_lineLength] = best;
+            _lineLength += 1;
+            board.makeMove(best);
+        }
+        for (int i = 0; i < _lineLength; i += 1) {
+            board.undo();
+        }
+    }
+
+    /** Return true iff the current prove must stop, setting _stopped if
+     *  so.  The clock is consulted only every CLOCK_INTERVAL nodes. */
+    private boolean outOfTime() {
+        _nodes += 1;
+        if (!_stopped && _nodes % CLOCK_INTERVAL == 0
+            && System.currentTimeMillis() >= _deadline) {
+            _stopped = true;
+        }
+        return _stopped;
+    }
+
+    /** Return the index of the entry of the table for KEY, or -1 if
+     *  there is none. */
+    private int lookup(long key) {
+        int i = index(key);
+        if (_keys[i] == key && _work[i] > 0) {
+            return i;
+        } else if (_keys[i + 1] == key && _work[i + 1] > 0) {
+            return i + 1;
+        }
+        return -1;
+    }
+
+    /** Record PROOF and DISPROOF as the numbers of the position with
+     *  KEY, found with WORK nodes of search.  Each key has a bucket of
+     *  two entries, and replaces its own entry or else the one with less
+     *  work. */
+    private void store(long key, int proof, int disproof, int work) {
+        int i = index(key);
+        if (_keys[i + 1] == key
+            || (_keys[i] != key && _work[i + 1] < _work[i])) {
+            i += 1;
+        }
+        _keys[i] = key;
+        _proof[i] = proof;
+        _disproof[i] = disproof;
+        _work[i] = Math.max(work, 1);
+    }
+
+    /** Return the index of the first entry of the bucket for KEY. */
+    private int index(long key) {
+        return (int) (key ^ (key >>> 32)) & _mask;
+    }
+
+    /** A proof or disproof number that cannot be reached: that of a
+     *  position proven lost (proof) or won (disproof). */
+    private static final int INFTY = Integer.MAX_VALUE;
+
+    /** Number of nodes searched between checks of the clock. */
+    private static final int CLOCK_INTERVAL = 1 << 10;
+
+    /** Number of bytes in one entry of the table. */
+    private static final int ENTRY_BYTES = 20;
+
+    /** The table: entry I holds the key of a position, its proof and
+     *  disproof numbers, and the number of nodes searched to find them
+     *  (0 for an unused entry). */
+    private final long[] _keys;
+    /** Proof numbers of the table (see _keys). */
+    private final int[] _proof;
+    /** Disproof numbers of the table (see _keys). */
+    private final int[] _disproof;
+    /** Work of the entries of the table (see _keys). */
+    private final int[] _work;
+
+    /** Mask giving the index of the first entry of a bucket. */
+    private final int _mask;
+
+    /** Time at which the current prove must stop. */
+    private long _deadline;
+
+    /** True iff the current prove has run out of time. */
+    private boolean _stopped;
+
+    /** Number of nodes visited by the current prove. */
+    private long _nodes;
+
+    /** Number of moves made on the board at the root of the search. */
+    private int _rootPly;
+
+    /** Move buffers, indexed by number of moves made since the root. */
+    private final int[][] _moves = new int[Board.BOARD_SIZE][];
+
+    /** Keys of the positions after the moves in _moves. */
+    private final long[][] _childKeys = new long[Board.BOARD_SIZE][];
+
+    /** Proof and disproof numbers of the positions after the moves in
+     *  _moves, as last known to mid. */
+    private final int[][] _childProof = new int[Board.BOARD_SIZE][],
+        _childDisproof = new int[Board.BOARD_SIZE][];
+
+    /** The proof and disproof numbers found by the last call of mid. */
+    private int _lastProof, _lastDisproof;
+
+    /** The line found by the last prove, and its length. */
+    private final int[] _line = new int[Board.BOARD_SIZE];
+    /** Length of _line. */
+    private int _lineLength;
+
+    /** The regions of the position being judged by verdict. */
+    private final Regions _regions = new Regions();
+
+    /** Solver for the regions of the positions judged by verdict. */
+    private final Filler _filler = new Filler();
+}
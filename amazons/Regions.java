@@ -0,0 +1,172 @@
+package amazons;
+
+import static amazons.BitBoards.*;
+
+/** The regions of a position.  Late in a game the spears wall the board
+ *  off into separate regions that no queen can cross, and the game
+ *  becomes a sum of independent games, one per region.  A region is a
+ *  set of squares that are not spears, connected by king steps (one
+ *  square in any of the eight directions).  Since every queen move is a
+ *  series of such steps over empty squares, no queen can move (or throw
+ *  a spear) out of its region.  Each region is of one kind: WHITE_ONLY
+ *  or BLACK_ONLY if it holds queens of just one side, CONTESTED if it
+ *  holds queens of both, and DEAD if it holds no queens, so that its
+ *  squares can never be filled.  Queens of either side standing next to
+ *  each other join their regions, even though neither can pass the
+ *  other, so a region may be marked CONTESTED when it is really two.
+ *  The regions are found by flooding with BitBoards shifts, and kept in
+ *  preallocated arrays reused by each compute, as for Territory.
+ *  @author Anastasia
+ */
+final class Regions {
+
+    /** The kinds of region. */
+    static final int DEAD = 0, WHITE_ONLY = 1, BLACK_ONLY = 2,
+        CONTESTED = 3;
+
+    /** Find the regions of the position whose spears are SPEARLO,
+     *  SPEARHI, and whose white and black queens are WHITELO, WHITEHI
+     *  and BLACKLO, BLACKHI. */
+    void compute(long spearLo, long spearHi, long whiteLo, long whiteHi,
+                 long blackLo, long blackHi) {
+        long openLo = ~spearLo, openHi = ~spearHi & BOARD_HI;
+        long queensLo = whiteLo | blackLo, queensHi = whiteHi | blackHi;
+        _count = 0;
+        _contestedLo = _contestedHi = 0;
+        _numContested = 0;
+        _numLive = 0;
+        while ((openLo | openHi) != 0) {
+            int sq = first(openLo, openHi);
+            long lo = loBit(sq), hi = hiBit(sq);
+            while (true) {
+                long nextLo = lo, nextHi = hi;
+                for (int dir = 0; dir < 8; dir += 1) {
+                    nextLo |= shiftLo(lo, hi, dir);
+                    nextHi |= shiftHi(lo, hi, dir);
+                }
+                nextLo &= openLo;
+                nextHi &= openHi;
+                if (nextLo == lo && nextHi == hi) {
+                    break;
+                }
+                lo = nextLo;
+                hi = nextHi;
+            }
+            openLo &= ~lo;
+            openHi &= ~hi;
+
+            int r = _count;
+            _count += 1;
+            _lo[r] = lo;
+            _hi[r] = hi;
+            _emptyLo[r] = lo & ~queensLo;
+            _emptyHi[r] = hi & ~queensHi;
+            boolean white = ((lo & whiteLo) | (hi & whiteHi)) != 0,
+                black = ((lo & blackLo) | (hi & blackHi)) != 0;
+            if (white && black) {
+                _kind[r] = CONTESTED;
+                _contestedLo |= lo;
+                _contestedHi |= hi;
+                _numContested += 1;
+            } else if (white) {
+                _kind[r] = WHITE_ONLY;
+            } else if (black) {
+                _kind[r] = BLACK_ONLY;
+            } else {
+                _kind[r] = DEAD;
+            }
+            if (_kind[r] != DEAD) {
+                _numLive += numEmpty(r);
+            }
+        }
+    }
+
+    /** Return the number of regions found by the last compute. */
+    int count() {
+        return _count;
+    }
+
+    /** Return the kind of region #R. */
+    int kind(int r) {
+        return _kind[r];
+    }
+
+    /** Return the low word of the set of squares (empty or holding a
+     *  queen) of region #R. */
+    long lo(int r) {
+        return _lo[r];
+    }
+
+    /** Return the high word of the set of squares of region #R. */
+    long hi(int r) {
+        return _hi[r];
+    }
+
+    /** Return the low word of the set of empty squares of region #R. */
+    long emptyLo(int r) {
+        return _emptyLo[r];
+    }
+
+    /** Return the high word of the set of empty squares of region #R. */
+    long emptyHi(int r) {
+        return _emptyHi[r];
+    }
+
+    /** Return the number of empty squares in region #R. */
+    int numEmpty(int r) {
+        return BitBoards.count(_emptyLo[r], _emptyHi[r]);
+    }
+
+    /** Return the number of CONTESTED regions. */
+    int numContested() {
+        return _numContested;
+    }
+
+    /** Return the number of empty squares in regions that are not DEAD:
+     *  those that may still be filled. */
+    int numLive() {
+        return _numLive;
+    }
+
+    /** Return the low word of the union of the CONTESTED regions. */
+    long contestedLo() {
+        return _contestedLo;
+    }
+
+    /** Return the high word of the union of the CONTESTED regions. */
+    long contestedHi() {
+        return _contestedHi;
+    }
+
+    /** The high word of the set of all squares on the board. */
+    private static final long BOARD_HI = (1L << (Board.BOARD_SIZE - 64)) - 1;
+
+    /** The most regions a position can have.  Squares of different
+     *  regions are never king steps apart, so each 2x2 block of squares
+     *  meets at most one region. */
+    private static final int MAX_REGIONS =
+        (Board.SIZE / 2) * (Board.SIZE / 2);
+
+    /** Number of regions found by the last compute. */
+    private int _count;
+
+    /** _kind[R] is the kind of region #R. */
+    private final int[] _kind = new int[MAX_REGIONS];
+
+    /** _lo[R] and _hi[R] are the squares of region #R. */
+    private final long[] _lo = new long[MAX_REGIONS],
+        _hi = new long[MAX_REGIONS];
+
+    /** _emptyLo[R] and _emptyHi[R] are the empty squares of region #R. */
+    private final long[] _emptyLo = new long[MAX_REGIONS],
+        _emptyHi = new long[MAX_REGIONS];
+
+    /** The union of the CONTESTED regions. */
+    private long _contestedLo, _contestedHi;
+
+    /** Number of CONTESTED regions. */
+    private int _numContested;
+
+    /** Number of empty squares in regions that are not DEAD. */
+    private int _numLive;
+}
@@ -0,0 +1,303 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.Math.*;
+
+/** A parallel search that divides the moves from the root position
+ *  among the threads of a ForkJoinPool, as an alternative to the
+ *  helper searches of AI.  Each iteration of the iterative deepening
+ *  first searches the best move of the previous iteration alone, to get
+ *  a good lower bound (alpha) on the value of the root.  The remaining
+ *  moves are then split recursively into halves, and each move is
+ *  searched by whichever worker takes it, on that worker's own Board
+ *  and Search, with a null window at the best alpha found so far.  Moves
+ *  late in the order are first searched to a reduced depth, as by
+ *  Search.reduction, and again to the full depth if they beat alpha.
+ *  Only moves that still beat it are searched with a full window.  The
+ *  best value and move are kept in one atomic word, so every move
+ *  searched sees the tightest bound yet found by any worker.  Work
+ *  stealing balances the subtrees, whose sizes vary widely.  The
+ *  workers share a transposition table and evaluation cache, as AI's
+ *  searches do.  Root splitting always searches whole moves.
+ *  @author Anastasia
+ */
+final class RootSplit {
+
+    /** A root splitter using THREADS worker threads, whose searches
+     *  record results in TABLE and evaluations in CACHE (if not null),
+     *  evaluate positions with the weights of EVALUATOR, and are
+     *  selective as given by BEAMWIDTH, REDUCEAFTER, and REDUCEMOREAFTER
+     *  (see AI.setSelectivity). */
+    RootSplit(int threads, TranspositionTable table, EvalCache cache,
+              Evaluator evaluator, int beamWidth, int reduceAfter,
+              int reduceMoreAfter) {
+        _table = table;
+        _cache = cache;
+        _weights = evaluator.weights();
+        _beamWidth = beamWidth;
+        _reduceAfter = reduceAfter;
+        _reduceMoreAfter = reduceMoreAfter;
+        _pool = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) { };
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /** Search BOARD, which is unchanged, to depths 1, 2, ... MAXDEPTH,
+     *  stopping as for Search.deepen with DEADLINE and SOFTDEADLINE, and
+     *  return the code of the best move of the deepest iteration that
+     *  finished (or the best found by the first, if it was stopped).
+     *  After each iteration, the root moves are sorted by the values
+     *  their searches returned, best first, so that the moves reduced
+     *  (see Search.reduction) in the next are those that did worst. */
+    int findMove(Board board, int maxDepth, long deadline,
+                 long softDeadline) {
+        _board = board;
+        _deadline = deadline;
+        _table.newSearch();
+        synchronized (_searches) {
+            for (Search search : _searches) {
+                search.newSearch();
+            }
+        }
+        int n = _numMoves = board.generateMoves(_moves);
+        int best = _moves[0];
+        for (int depth = 1; depth <= maxDepth; depth += 1) {
+            _depth = depth;
+            _stopped = false;
+            _best.set(Long.MIN_VALUE);
+            Arrays.fill(_scores, 0, n, -INFTY);
+            _pool.invoke(new Root(0, 1));
+            if (!_stopped && n > 1) {
+                _pool.invoke(new Root(1, n));
+            }
+            long result = _best.get();
+            if (_stopped) {
+                if (depth == 1 && result != Long.MIN_VALUE) {
+                    best = _moves[(int) (~result & INDEX_MASK)];
+                }
+                break;
+            }
+            int score = (int) (result >> INDEX_BITS);
+            int index = (int) (~result & INDEX_MASK);
+            best = _moves[index];
+            sortMoves(n, index);
+            if (abs(score) == Search.WINNING_VALUE
+                || depth >= board.numEmpty()
+                || System.currentTimeMillis() > softDeadline) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    /** Sort the first N root moves by their values in the last
+     *  iteration, best first, but with the move at index BEST before
+     *  all others.  Moves with equal values keep their order. */
+    private void sortMoves(int n, int best) {
+        _scores[best] = INFTY;
+        for (int i = 0; i < n; i += 1) {
+            _keys[i] = ((long) -_scores[i] << INDEX_BITS) | i;
+        }
+        Arrays.sort(_keys, 0, n);
+        for (int i = 0; i < n; i += 1) {
+            _sorted[i] = _moves[(int) (_keys[i] & INDEX_MASK)];
+        }
+        System.arraycopy(_sorted, 0, _moves, 0, n);
+    }
+
+    /** Return the root moves of the last findMove, in the order in which
+     *  another iteration would search them. */
+    int[] rootMoves() {
+        return Arrays.copyOf(_moves, _numMoves);
+    }
+
+    /** Shut down my worker threads. */
+    void shutdown() {
+        _pool.shutdown();
+    }
+
+    /** Return the number of nodes visited by all my searches since the
+     *  start of the last findMove.  Approximate while a search runs. */
+    long nodes() {
+        long total = 0;
+        synchronized (_searches) {
+            for (Search search : _searches) {
+                total += search.nodes();
+            }
+        }
+        return total;
+    }
+
+    /** The task of searching the root moves _moves[LO .. HI-1] in the
+     *  current iteration. */
+    private class Root extends RecursiveAction {
+
+        /** A task for the root moves _moves[LO .. HI-1]. */
+        Root(int lo, int hi) {
+            _lo = lo;
+            _hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (_hi - _lo > 1) {
+                int mid = (_lo + _hi) >>> 1;
+                invokeAll(new Root(_lo, mid), new Root(mid, _hi));
+            } else {
+                searchRoot(_lo);
+            }
+        }
+
+        /** Serialization version (RecursiveAction is Serializable). */
+        private static final long serialVersionUID = 1L;
+
+        /** Bounds of my range of root moves. */
+        private final int _lo, _hi;
+    }
+
+    /** Search _moves[I] in the current iteration, recording its value
+     *  in _scores, and in _best if it is the best so far.  Searches to
+     *  depth 1 are never stopped by Search, so the first iteration is
+     *  stopped here at the deadline, once a move has been searched. */
+    private void searchRoot(int i) {
+        if (_stopped || alpha() >= Search.WINNING_VALUE) {
+            return;
+        }
+        if (_depth == 1 && i > 0
+            && System.currentTimeMillis() >= _deadline) {
+            _stopped = true;
+            return;
+        }
+        Local local = _local.get();
+        Search search = local.search;
+        local.board.copy(_board);
+        int move = _moves[i];
+        int alpha = alpha();
+        int value;
+        if (i == 0) {
+            value = search.searchMove(local.board, move, _depth, -INFTY,
+                                      INFTY, _deadline);
+        } else {
+            int r = search.reduction(i, _depth);
+            value = search.searchMove(local.board, move, _depth - r, alpha,
+                                      alpha + 1, _deadline);
+            if (value > alpha && r > 0 && !search.stopped()) {
+                value = search.searchMove(local.board, move, _depth, alpha,
+                                          alpha + 1, _deadline);
+            }
+            if (value > alpha && !search.stopped()) {
+                alpha = alpha();
+                value = search.searchMove(local.board, move, _depth, alpha,
+                                          INFTY, _deadline);
+            }
+        }
+        if (search.stopped()) {
+            _stopped = true;
+            return;
+        }
+        _scores[i] = value;
+        if (value > alpha || i == 0) {
+            long entry = ((long) value << INDEX_BITS) | (~i & INDEX_MASK);
+            _best.accumulateAndGet(entry, Math::max);
+        }
+    }
+
+    /** Return the best value found so far in the current iteration, or
+     *  -INFTY if there is none. */
+    private int alpha() {
+        long best = _best.get();
+        return best == Long.MIN_VALUE ? -INFTY
+            : (int) (best >> INDEX_BITS);
+    }
+
+    /** The board and search of one worker thread. */
+    private class Local {
+        /** The worker's copy of the root position. */
+        private final Board board = new Board();
+        /** The worker's search. */
+        private final Search search =
+            new Search(_table, _cache, new Evaluator(_weights), false,
+                       _beamWidth, _reduceAfter, _reduceMoreAfter);
+    }
+
+    /** A magnitude greater than a normal value. */
+    private static final int INFTY = Integer.MAX_VALUE;
+
+    /** Number of bits of _best holding the (complemented) index of the
+     *  best move, so that the earlier of two equal moves is larger. */
+    private static final int INDEX_BITS = 16;
+
+    /** Mask for the index field of _best. */
+    private static final long INDEX_MASK = (1 << INDEX_BITS) - 1;
+
+    /** Shared results of the searches. */
+    private final TranspositionTable _table;
+
+    /** Shared static evaluations, or null. */
+    private final EvalCache _cache;
+
+    /** Weights of the evaluators of my searches. */
+    private final int[] _weights;
+
+    /** Selectivity of my searches, as for AI.setSelectivity. */
+    private final int _beamWidth, _reduceAfter, _reduceMoreAfter;
+
+    /** My worker threads. */
+    private final ForkJoinPool _pool;
+
+    /** All Searches created for my workers. */
+    private final List<Search> _searches = new ArrayList<>();
+
+    /** The Board and Search of each worker thread. */
+    private final ThreadLocal<Local> _local = ThreadLocal.withInitial(() -> {
+        Local local = new Local();
+        synchronized (_searches) {
+            _searches.add(local.search);
+        }
+        return local;
+    });
+
+    /** The root moves, the best of the last iteration first. */
+    private final int[] _moves = new int[Board.MAX_MOVES];
+
+    /** The number of root moves. */
+    private int _numMoves;
+
+    /** _scores[I] is the value returned by the search of _moves[I] in
+     *  the current iteration (a bound, if it was searched with a null
+     *  window), or -INFTY if it was not searched. */
+    private final int[] _scores = new int[Board.MAX_MOVES];
+
+    /** Sort keys used by sortMoves: the negated score in the high bits
+     *  and the index of the move in the low INDEX_BITS. */
+    private final long[] _keys = new long[Board.MAX_MOVES];
+
+    /** The root moves in their new order, while sortMoves runs. */
+    private final int[] _sorted = new int[Board.MAX_MOVES];
+
+    /** The position being searched. */
+    private Board _board;
+
+    /** Depth of the current iteration. */
+    private int _depth;
+
+    /** Time at which the current search must stop. */
+    private long _deadline;
+
+    /** True iff some search in the current iteration was stopped. */
+    private volatile boolean _stopped;
+
+    /** The best value found so far in the current iteration in the high
+     *  bits and the complemented index of its move in the low INDEX_BITS,
+     *  or Long.MIN_VALUE if none. */
+    private final AtomicLong _best = new AtomicLong();
+}
@@ -0,0 +1,844 @@
+package amazons;
+
+import java.util.Arrays;
+
+import static java.lang.Math.*;
+
+import static amazons.Piece.*;
+
+/** The state and methods of one alpha-beta search, as used by AI.  A
+ *  Search works on its own Board, and keeps its own move buffers,
+ *  principal variation, move ordering heuristics, and evaluator, so that
+ *  several Searches may run at once in different threads.  They may
+ *  share a TranspositionTable and an EvalCache, which tolerate
+ *  concurrent use without locks.  Both are keyed by the canonical key
+ *  of a position (see Board.canonicalHash), so that what is learned
+ *  about a position serves all its rotations and reflections; the
+ *  moves in the table are those of the canonical image.
+ *  @author Anastasia
+ */
+final class Search {
+
+    /** A position magnitude indicating a win (for the player to move if
+     *  positive, the opponent if negative). */
+    static final int WINNING_VALUE = Integer.MAX_VALUE - 1;
+    /** A magnitude greater than a normal value. */
+    private static final int INFTY = Integer.MAX_VALUE;
+
+    /** Deepest search attempted (also the largest depth the
+     *  transposition table can record). */
+    static final int MAX_DEPTH = 63;
+
+    /** Half-width of the first aspiration window of an iteration (about
+     *  a square of territory), which is doubled after each failure. */
+    private static final int ASPIRATION_WINDOW = 10;
+
+    /** Largest number of empty squares at which the search looks for
+     *  separate regions (see Regions).  Before then, there are
+     *  hardly ever any. */
+    private static final int ENDGAME_EMPTY = 50;
+
+    /** Number of nodes searched between checks of the clock. */
+    private static final int CLOCK_INTERVAL = 1 << 10;
+
+    /** A search recording its results in TABLE, caching evaluations in
+     *  CACHE (if not null), and evaluating positions with EVALUATOR,
+     *  which it must not share.  It treats queen moves and spear throws
+     *  as separate plies iff SPLITPLY, and is selective as given by
+     *  BEAMWIDTH, REDUCEAFTER, and REDUCEMOREAFTER (see
+     *  AI.setSelectivity). */
+    Search(TranspositionTable table, EvalCache cache, Evaluator evaluator,
+           boolean splitPly, int beamWidth, int reduceAfter,
+           int reduceMoreAfter) {
+        _table = table;
+        _evalCache = cache;
+        _evaluator = evaluator;
+        _splitPly = splitPly;
+        _beamWidth = beamWidth;
+        _reduceAfter = reduceAfter;
+        _reduceMoreAfter = reduceMoreAfter;
+    }
+
+    /** Search BOARD, which is private to this search and is changed only
+     *  by making and undoing moves, to depths 1, 2, ... MAXDEPTH (2, 3,
+     *  ... in split-ply mode, so that every search chooses a spear),
+     *  skipping the first SKIP depths.  Stop at time DEADLINE (as from
+     *  System.currentTimeMillis), after a call of stop, after an
+     *  iteration that finishes later than SOFTDEADLINE, or when a deeper
+     *  search cannot change the result.  The first iteration stops at
+     *  DEADLINE only once it has searched one move from the root.
+     *  Afterwards, bestMove and completedDepth give the best move and
+     *  depth of the deepest iteration that finished, or, if none did,
+     *  the best move found by the first before it stopped, and 0.
+     *  Returns the value for the player to move of the deepest iteration
+     *  that finished (0 if none did).  Each iteration tries the
+     *  principal variation of the previous one first, and searches a
+     *  narrow aspiration window around its value, widening the window on
+     *  the side where the search fails until the value falls inside. */
+    int deepen(Board b, int skip, int maxDepth, long deadline,
+               long softDeadline) {
+        newSearch();
+        _deadline = deadline;
+        _stopped = false;
+        _bestMove = _foundMove = 0;
+        _completedDepth = 0;
+        _rootPly = b.numMoves();
+        _prevPVLength = 0;
+
+        int plies = _splitPly ? 2 : 1;
+        _firstDepth = plies;
+        int score = 0;
+        for (_depth = _firstDepth + skip; _depth <= maxDepth; _depth += 1) {
+            int alpha = -INFTY, beta = INFTY;
+            int delta = ASPIRATION_WINDOW;
+            if (_depth > _firstDepth && abs(score) < WINNING_VALUE) {
+                alpha = score - delta;
+                beta = score + delta;
+            }
+            int value;
+            while (true) {
+                if (_splitPly) {
+                    value = findQueenMove(b, _depth, true, alpha, beta);
+                } else {
+                    _followPV = true;
+                    value = findMove(b, _depth, true, alpha, beta);
+                }
+                if (_stopped) {
+                    break;
+                } else if (value <= alpha) {
+                    alpha = (int) max(-INFTY, (long) value - delta);
+                } else if (value >= beta) {
+                    beta = (int) min(INFTY, (long) value + delta);
+                } else {
+                    break;
+                }
+                delta *= 2;
+            }
+            if (_stopped) {
+                if (_completedDepth == 0) {
+                    _bestMove = _foundMove;
+                }
+                break;
+            }
+            score = value;
+            _bestMove = _foundMove;
+            _completedDepth = _depth;
+            _prevPVLength = _pvLength[0];
+            System.arraycopy(_pv[0], 0, _prevPV, 0, _prevPVLength);
+            if (abs(score) == WINNING_VALUE || _depth >= plies * b.numEmpty()
+                || System.currentTimeMillis() > softDeadline) {
+                break;
+            }
+        }
+        return score;
+    }
+
+    /** Return the value for the player to move on BOARD of the legal
+     *  move with code MOVE, searched as by an iteration of deepen DEPTH
+     *  levels deep (counting MOVE), with bounds ALPHA and BETA on the
+     *  value of BOARD as for findMove, and stopping at time DEADLINE
+     *  unless DEPTH is 1.  BOARD is left unchanged.  If the search is
+     *  stopped, stopped becomes true and the value is meaningless.
+     *  Searches only whole moves, regardless of split-ply mode. */
+    int searchMove(Board board, int move, int depth, int alpha, int beta,
+                   long deadline) {
+        _deadline = deadline;
+        _stopped = false;
+        _rootPly = board.numMoves();
+        _prevPVLength = 0;
+        _followPV = false;
+        _firstDepth = 1;
+        _foundMove = 0;
+        _depth = depth;
+        board.makeMove(move);
+        int value = -findMove(board, depth - 1, false, -beta, -alpha);
+        board.undo();
+        return value;
+    }
+
+    /** Return true iff the last deepen or searchMove was stopped before
+     *  it finished. */
+    boolean stopped() {
+        return _stopped;
+    }
+
+    /** Prepare for the searches for a new move: forget the move
+     *  ordering heuristics of earlier searches, and reset the node
+     *  count.  Done by each deepen. */
+    void newSearch() {
+        _ordering.newSearch();
+        _nodes = 0;
+    }
+
+    /** Forget everything learned by earlier searches about move
+     *  ordering, as if this Search were new. */
+    void clear() {
+        _ordering.clear();
+        _nodes = 0;
+    }
+
+    /** Stop the current call of deepen or searchMove (possibly running
+     *  in another thread) soon, or the next one as soon as it starts if
+     *  there is no current call.  Searches stay stopped until resume is
+     *  called. */
+    void stop() {
+        _halted = true;
+    }
+
+    /** Undo the effect of stop on later calls of deepen. */
+    void resume() {
+        _halted = false;
+    }
+
+    /** Return the code of the best move found by the last deepen, or 0
+     *  if it finished no iteration. */
+    int bestMove() {
+        return _bestMove;
+    }
+
+    /** Return the depth of the deepest iteration finished by the last
+     *  deepen. */
+    int completedDepth() {
+        return _completedDepth;
+    }
+
+    /** Return the number of nodes visited since the last newSearch. */
+    long nodes() {
+        return _nodes;
+    }
+
+    /** Stop each later deepen once it has visited more than LIMIT nodes
+     *  (0 for no limit), as if time had run out.  A search limited only
+     *  by nodes does the same work on every run, whatever the speed of
+     *  the machine, provided it starts from the same tables. */
+    void setNodeLimit(long limit) {
+        _nodeLimit = limit;
+    }
+
+    /** Results of searches, possibly shared with other Searches. */
+    private final TranspositionTable _table;
+
+    /** Static evaluations, possibly shared with other Searches, or
+     *  null. */
+    private final EvalCache _evalCache;
+
+    /** Static evaluation of the positions at the leaves. */
+    private final Evaluator _evaluator;
+
+    /** True iff queen moves and spear throws are separate plies. */
+    private final boolean _splitPly;
+
+    /** Number of moves considered at each node (0 for all). */
+    private final int _beamWidth;
+
+    /** Number of moves at each node searched before the rest are
+     *  reduced (0 for none). */
+    private final int _reduceAfter;
+
+    /** Number of moves at each node searched before the rest are
+     *  reduced by two levels (0 for none). */
+    private final int _reduceMoreAfter;
+
+    /** Time (as from System.currentTimeMillis) at which the current
+     *  search must stop. */
+    private long _deadline;
+
+    /** True iff the current search has run out of time or been
+     *  stopped. */
+    private boolean _stopped;
+
+    /** True iff stop has been called since the last resume.  Set by
+     *  another thread. */
+    private volatile boolean _halted;
+
+    /** Code of the move found by the last call to findMove or
+     *  findQueenMove with SAVEMOVE, or of the best move it has found so
+     *  far while it runs, or 0 if none. */
+    private int _foundMove;
+
+    /** Code of the best move of the deepest finished iteration, or 0. */
+    private int _bestMove;
+
+    /** Depth of the deepest finished iteration, or 0. */
+    private int _completedDepth;
+
+    /** Number of nodes visited by the current search. */
+    private long _nodes;
+
+    /** Number of nodes after which a search stops, or 0 for no limit. */
+    private long _nodeLimit;
+
+    /** Depth of the current iteration. */
+    private int _depth;
+
+    /** Depth of the first iteration, which is stopped only by stop or
+     *  once it has found a move. */
+    private int _firstDepth;
+
+    /** Number of moves made on the board at the root of the search. */
+    private int _rootPly;
+
+    /** _pv[PLY][PLY .. _pvLength[PLY] - 1] is the best line found from
+     *  the node at PLY of the current search. */
+    private final int[][] _pv = new int[MAX_DEPTH + 1][MAX_DEPTH + 1];
+
+    /** Lengths of the lines in _pv. */
+    private final int[] _pvLength = new int[MAX_DEPTH + 1];
+
+    /** The principal variation of the last finished iteration. */
+    private final int[] _prevPV = new int[MAX_DEPTH + 1];
+
+    /** Length of _prevPV. */
+    private int _prevPVLength;
+
+    /** True iff the current node lies on _prevPV. */
+    private boolean _followPV;
+
+    /** Move ordering heuristics for this search. */
+    private final MoveOrdering _ordering = new MoveOrdering(MAX_DEPTH);
+
+    /** Find a move from position BOARD and return its value for the
+     *  player to move, recording the move found in _foundMove iff
+     *  SAVEMOVE.  This is a fail-soft negamax principal variation search
+     *  DEPTH levels deep: a value between ALPHA and BETA is exact, a
+     *  value <= ALPHA is an upper bound, and a value >= BETA is a lower
+     *  bound on the true value.  The first move is searched with the
+     *  full window, and the others with a null window, being searched
+     *  again only if they turn out better than the best so far.  Moves
+     *  late in the order are first searched to a reduced depth (see
+     *  reduction), and only moves within the beam (see beam) are
+     *  searched at all.
+     *  Searching at level 0 simply returns a static estimate of the
+     *  board value and does not set _foundMove.  Results are
+     *  recorded in the transposition table, and moves are tried in the
+     *  order given by _ordering.  If time runs out, sets _stopped and
+     *  returns a meaningless value. */
+    private int findMove(Board board, int depth, boolean saveMove,
+                         int alpha, int beta) {
+        int ply = board.numMoves() - _rootPly;
+        _pvLength[ply] = ply;
+        if (outOfTime()) {
+            return 0;
+        }
+        if (depth == 0 || board.winner() != EMPTY) {
+            return staticScore(board);
+        }
+        boolean endgame = board.numEmpty() <= ENDGAME_EMPTY;
+        if (endgame) {
+            int solved = solveRegions(board);
+            if (solved != 0 && !saveMove) {
+                return solved;
+            }
+        }
+
+        int sym = board.canonicalSymmetry();
+        long key = board.hash(sym);
+        long entry = _table.probe(key);
+        if (!saveMove && settles(entry, depth, alpha, beta)) {
+            return TranspositionTable.score(entry);
+        }
+        int hashMove = fromCanonical(sym, TranspositionTable.move(entry));
+
+        int[] moves = moveBuffer(board);
+        int n = board.generateMoves(moves);
+        if (endgame) {
+            n = restrict(moves, n);
+        }
+        boolean onPV = _followPV && ply < _prevPVLength;
+        int pvMove = onPV ? _prevPV[ply] : 0;
+        if (_beamWidth > 0 && n > _beamWidth && depth > 1) {
+            n = beam(board, moves, n, pvMove, hashMove);
+        }
+        _ordering.order(moves, n, ply, pvMove, hashMove);
+
+        int result = -INFTY;
+        int bestMove = 0;
+        int a = alpha;
+        for (int i = 0; i < n; i += 1) {
+            _followPV = onPV && moves[i] == pvMove;
+            board.makeMove(moves[i]);
+            int value;
+            if (i == 0) {
+                value = -findMove(board, depth - 1, false, -beta, -a);
+            } else {
+                int r = reduction(i, depth);
+                value = -findMove(board, depth - 1 - r, false, -a - 1, -a);
+                if (value > a && r > 0) {
+                    value = -findMove(board, depth - 1, false, -a - 1, -a);
+                }
+                if (value > a && value < beta) {
+                    value = -findMove(board, depth - 1, false, -beta, -a);
+                }
+            }
+            board.undo();
+            if (_stopped) {
+                return 0;
+            }
+
+            if (value > result) {
+                result = value;
+                bestMove = moves[i];
+                if (saveMove) {
+                    _foundMove = bestMove;
+                }
+                if (value > a) {
+                    a = value;
+                    if (value < beta) {
+                        updatePV(ply, bestMove);
+                    }
+                }
+            }
+            if (a >= beta) {
+                _ordering.cutoff(moves[i], ply, depth);
+                break;
+            }
+        }
+
+        _table.store(key, depth, bound(result, alpha, beta), result,
+                     toCanonical(sym, bestMove));
+        if (saveMove) {
+            _foundMove = bestMove;
+        }
+        return result;
+    }
+
+    /** Return the number of levels by which to reduce the first search
+     *  of the move at index I in the ordered moves of a node searched
+     *  DEPTH levels deep.  The first _reduceAfter moves, and all moves
+     *  at depths below 3, are not reduced; the moves from the
+     *  _reduceMoreAfter'th on (if it is not 0) are reduced by two
+     *  levels, and the others by one, leaving at least one level. */
+    int reduction(int i, int depth) {
+        if (_reduceAfter == 0 || i < _reduceAfter || depth < 3) {
+            return 0;
+        }
+        int r = _reduceMoreAfter > 0 && i >= _reduceMoreAfter ? 2 : 1;
+        return min(r, depth - 2);
+    }
+
+    /** Reduce the first N move codes in MOVES, legal on BOARD, to the
+     *  _beamWidth moves with the best static estimates (boardScore after
+     *  the move) for the player making them, and return their number.
+     *  PVMOVE and HASHMOVE are kept regardless of their estimates. */
+    int beam(Board board, int[] moves, int n, int pvMove, int hashMove) {
+        int sense = sense(board);
+        for (int i = 0; i < n; i += 1) {
+            int m = moves[i];
+            int estimate;
+            if (m == pvMove || m == hashMove) {
+                estimate = INFTY;
+            } else {
+                board.makeMove(m);
+                estimate = sense * board.boardScore();
+                board.undo();
+            }
+            _beamKeys[i] = ((long) -estimate << 32) | (m & 0xffffffffL);
+        }
+        Arrays.sort(_beamKeys, 0, n);
+        for (int i = 0; i < _beamWidth; i += 1) {
+            moves[i] = (int) _beamKeys[i];
+        }
+        return _beamWidth;
+    }
+
+    /** Sort keys used by beam: negated estimate in the high word and
+     *  move code in the low word. */
+    private final long[] _beamKeys = new long[Board.MAX_MOVES];
+
+    /** As for findMove, but treating the queen move and the spear throw
+     *  of each move as separate levels of the search, so that DEPTH
+     *  counts half-moves.  After a queen move, the mover's spear throws
+     *  are searched by findSpear, so a refutation found for one spear
+     *  throw can cut off the others, and a search may end (with a static
+     *  estimate) between the two parts of a move.  Queen moves are tried
+     *  in the order given by _ordering.orderQueenMoves.  Results are
+     *  recorded in the transposition table only for positions between
+     *  whole moves. */
+    private int findQueenMove(Board board, int depth, boolean saveMove,
+                              int alpha, int beta) {
+        if (outOfTime()) {
+            return 0;
+        }
+        if (depth == 0 || board.winner() != EMPTY) {
+            return staticScore(board);
+        }
+        if (!saveMove && board.numEmpty() <= ENDGAME_EMPTY) {
+            int solved = solveRegions(board);
+            if (solved != 0) {
+                return solved;
+            }
+        }
+
+        int sym = board.canonicalSymmetry();
+        long key = board.hash(sym);
+        long entry = _table.probe(key);
+        if (!saveMove && settles(entry, depth, alpha, beta)) {
+            return TranspositionTable.score(entry);
+        }
+        int hashMove = fromCanonical(sym, TranspositionTable.move(entry));
+
+        int[] moves = moveBuffer(board);
+        int n = board.generateQueenMoves(board.turn(), moves);
+        _ordering.orderQueenMoves(board, moves, n, hashMove);
+
+        int result = -INFTY;
+        int bestMove = 0;
+        int ply = 2 * (board.numMoves() - _rootPly);
+        int a = alpha;
+        for (int i = 0; i < n; i += 1) {
+            int from = Move.codeFrom(moves[i]), to = Move.codeTo(moves[i]);
+            board.moveQueen(from, to);
+            int value;
+            if (i == 0) {
+                value = findSpear(board, depth - 1, a, beta, from, to,
+                                  hashMove);
+            } else {
+                value = findSpear(board, depth - 1, a, a + 1, from, to,
+                                  hashMove);
+                if (value > a && value < beta) {
+                    value = findSpear(board, depth - 1, a, beta, from, to,
+                                      hashMove);
+                }
+            }
+            int move = Move.code(from, to, _bestSpear);
+            board.moveQueen(to, from);
+            if (_stopped) {
+                return 0;
+            }
+
+            if (value > result) {
+                result = value;
+                bestMove = move;
+                a = max(a, value);
+                if (saveMove) {
+                    _foundMove = bestMove;
+                }
+            }
+            if (a >= beta) {
+                _ordering.cutoff(move, ply, depth);
+                break;
+            }
+        }
+
+        _table.store(key, depth, bound(result, alpha, beta), result,
+                     toCanonical(sym, bestMove));
+        if (saveMove) {
+            _foundMove = bestMove;
+        }
+        return result;
+    }
+
+    /** Return the value, for the player to move, of the position on
+     *  BOARD reached by moving that player's queen from the square with
+     *  index FROM to the one with index TO, searching its spear throws
+     *  as for findMove with DEPTH half-moves remaining, ALPHA, and BETA.
+     *  Sets _bestSpear to the best throw found (0 at depth 0).  Spear
+     *  throws are ordered by _ordering, with that of HASHMOVE (the table
+     *  move at the position before the queen move) first. */
+    private int findSpear(Board board, int depth, int alpha, int beta,
+                          int from, int to, int hashMove) {
+        _bestSpear = 0;
+        if (outOfTime()) {
+            return 0;
+        }
+        if (depth == 0) {
+            return sense(board) * evaluate(board);
+        }
+
+        int[] moves = spearBuffer(board);
+        int n = board.reachableFrom(to, -1, moves);
+        for (int i = 0; i < n; i += 1) {
+            moves[i] = Move.code(from, to, moves[i]);
+        }
+        int ply = 2 * (board.numMoves() - _rootPly) + 1;
+        _ordering.order(moves, n, ply, 0, hashMove);
+
+        int result = -INFTY;
+        int bestMove = 0;
+        int a = alpha;
+        for (int i = 0; i < n; i += 1) {
+            board.moveQueen(to, from);
+            board.makeMove(moves[i]);
+            int value;
+            if (i == 0) {
+                value = -findQueenMove(board, depth - 1, false, -beta, -a);
+            } else {
+                value = -findQueenMove(board, depth - 1, false, -a - 1, -a);
+                if (value > a && value < beta) {
+                    value = -findQueenMove(board, depth - 1, false,
+                                           -beta, -a);
+                }
+            }
+            board.undo();
+            board.moveQueen(from, to);
+            if (_stopped) {
+                return 0;
+            }
+
+            if (value > result) {
+                result = value;
+                bestMove = moves[i];
+                a = max(a, value);
+            }
+            if (a >= beta) {
+                _ordering.cutoff(moves[i], ply, depth);
+                break;
+            }
+        }
+        _bestSpear = Move.codeSpear(bestMove);
+        return result;
+    }
+
+    /** Return true iff the data word ENTRY from the transposition table
+     *  (0 if none) records a search at least DEPTH deep whose score
+     *  settles the value of a node searched with bounds ALPHA and
+     *  BETA. */
+    private static boolean settles(long entry, int depth, int alpha,
+                                   int beta) {
+        if (entry == 0 || TranspositionTable.depth(entry) < depth) {
+            return false;
+        }
+        int score = TranspositionTable.score(entry);
+        switch (TranspositionTable.bound(entry)) {
+        case TranspositionTable.EXACT:
+            return true;
+        case TranspositionTable.LOWER:
+            return score >= beta;
+        default:
+            return score <= alpha;
+        }
+    }
+
+    /** Return the bound type of RESULT, the value found by a search with
+     *  bounds ALPHA and BETA. */
+    private static int bound(int result, int alpha, int beta) {
+        if (result <= alpha) {
+            return TranspositionTable.UPPER;
+        } else if (result >= beta) {
+            return TranspositionTable.LOWER;
+        } else {
+            return TranspositionTable.EXACT;
+        }
+    }
+
+    /** Return true iff the current search must stop, setting _stopped if
+     *  so.  The clock and stop requests are consulted only every
+     *  CLOCK_INTERVAL nodes.  The first iteration is not stopped for
+     *  lack of nodes, and not for lack of time until it has searched a
+     *  move from the root, so that there is always a move to return.
+     *  The node limit is checked at every node, so that a search limited
+     *  only by nodes always stops at the same point. */
+    private boolean outOfTime() {
+        _nodes += 1;
+        if (!_stopped && _nodeLimit > 0 && _nodes > _nodeLimit
+            && _depth > _firstDepth) {
+            _stopped = true;
+        }
+        if (!_stopped && _nodes % CLOCK_INTERVAL == 0
+            && (_halted || ((_depth > _firstDepth || _foundMove != 0)
+                            && System.currentTimeMillis() >= _deadline))) {
+            _stopped = true;
+        }
+        return _stopped;
+    }
+
+    /** Record that MOVE, followed by the best line from the node after
+     *  it, is the best line from the node at PLY. */
+    private void updatePV(int ply, int move) {
+        _pv[ply][ply] = move;
+        int len = _pvLength[ply + 1];
+        System.arraycopy(_pv[ply + 1], ply + 1, _pv[ply], ply + 1,
+                         len - ply - 1);
+        _pvLength[ply] = max(len, ply + 1);
+    }
+
+    /** Return the buffer to hold the moves generated at the current
+     *  position of BOARD during a search.  Each move made lengthens
+     *  BOARD's history by one, so the buffers of the positions along one
+     *  line of search are distinct, and are reused between lines. */
+    private int[] moveBuffer(Board board) {
+        int ply = board.numMoves();
+        if (_moveBuffers[ply] == null) {
+            _moveBuffers[ply] = new int[Board.MAX_MOVES];
+        }
+        return _moveBuffers[ply];
+    }
+
+    /** Move buffers for the search, indexed by number of moves made. */
+    private final int[][] _moveBuffers = new int[Board.BOARD_SIZE][];
+
+    /** Return the buffer to hold the spear throws generated by findSpear
+     *  at the current position of BOARD, as for moveBuffer. */
+    private int[] spearBuffer(Board board) {
+        int ply = board.numMoves();
+        if (_spearBuffers[ply] == null) {
+            _spearBuffers[ply] = new int[Board.BOARD_SIZE];
+        }
+        return _spearBuffers[ply];
+    }
+
+    /** Spear-throw buffers for findSpear, indexed by number of moves
+     *  made. */
+    private final int[][] _spearBuffers = new int[Board.BOARD_SIZE][];
+
+    /** The best spear throw found by the last call to findSpear. */
+    private int _bestSpear;
+
+    /** Return a heuristic value for BOARD, for the player to move. */
+    private int staticScore(Board board) {
+        Piece winner = board.winner();
+        if (winner == BLACK) {
+            return -sense(board) * WINNING_VALUE;
+        } else if (winner == WHITE) {
+            return sense(board) * WINNING_VALUE;
+        }
+
+        int value = evaluate(board);
+        if (board.numEmpty() <= ENDGAME_EMPTY) {
+            int solved = solveRegions(board);
+            if (solved != 0) {
+                return solved;
+            }
+            value += _fillBonus;
+        }
+        return sense(board) * value;
+    }
+
+    /** Find the regions of BOARD (see Regions), and solve those that
+     *  hold the queens of one side with _filler.  If no region is
+     *  contested, the game is decided once the bounds show that the
+     *  player to move can make more moves than the opponent (and so wins)
+     *  or cannot (and so loses): return WINNING_VALUE or -WINNING_VALUE
+     *  for the player to move in that case, and otherwise 0.  Sets
+     *  _fillMoves to the first moves of the solutions of the regions of
+     *  the player to move, and _fillBonus to the value for white of the
+     *  squares that the static evaluation counts as territory but that
+     *  cannot be filled. */
+    private int solveRegions(Board board) {
+        board.computeRegions(_regions);
+        int mover = board.turn() == WHITE ? Regions.WHITE_ONLY
+            : Regions.BLACK_ONLY;
+        int whiteLower, whiteUpper, blackLower, blackUpper, defect;
+        whiteLower = whiteUpper = blackLower = blackUpper = defect = 0;
+        _numFillMoves = 0;
+        for (int r = 0; r < _regions.count(); r += 1) {
+            int kind = _regions.kind(r);
+            if (kind != Regions.WHITE_ONLY && kind != Regions.BLACK_ONLY) {
+                continue;
+            }
+            long emptyLo = _regions.emptyLo(r), emptyHi = _regions.emptyHi(r);
+            int lower = _filler.solve(emptyLo, emptyHi,
+                                      _regions.lo(r) & ~emptyLo,
+                                      _regions.hi(r) & ~emptyHi);
+            int upper = _filler.upper();
+            int unfilled = lower == upper ? _regions.numEmpty(r) - lower : 0;
+            if (kind == Regions.WHITE_ONLY) {
+                whiteLower += lower;
+                whiteUpper += upper;
+                defect -= unfilled;
+            } else {
+                blackLower += lower;
+                blackUpper += upper;
+                defect += unfilled;
+            }
+            if (kind == mover && lower > 0) {
+                _fillMoves[_numFillMoves] = _filler.firstMove();
+                _numFillMoves += 1;
+            }
+        }
+        _fillBonus = defect * _evaluator.squareValue(board.numEmpty());
+
+        if (_regions.numContested() == 0) {
+            boolean white = mover == Regions.WHITE_ONLY;
+            int myLower = white ? whiteLower : blackLower,
+                myUpper = white ? whiteUpper : blackUpper,
+                theirLower = white ? blackLower : whiteLower,
+                theirUpper = white ? blackUpper : whiteUpper;
+            if (myLower > theirUpper) {
+                return WINNING_VALUE;
+            } else if (myUpper <= theirLower) {
+                return -WINNING_VALUE;
+            }
+        }
+        return 0;
+    }
+
+    /** Remove from the first N move codes in MOVES, those of the player
+     *  to move in the position last given to solveRegions, the moves
+     *  into regions that are not contested, other than the moves in
+     *  _fillMoves, and return the number left.  Filling a region of one's
+     *  own is like passing, and any longest way of filling it is as good
+     *  as another, so only the contested regions need searching.  Does
+     *  nothing unless some region is contested. */
+    private int restrict(int[] moves, int n) {
+        if (_regions.numContested() == 0) {
+            return n;
+        }
+        long lo = _regions.contestedLo(), hi = _regions.contestedHi();
+        int k = 0;
+        for (int i = 0; i < n; i += 1) {
+            int m = moves[i];
+            boolean keep = BitBoards.contains(lo, hi, Move.codeFrom(m));
+            for (int j = 0; !keep && j < _numFillMoves; j += 1) {
+                keep = m == _fillMoves[j];
+            }
+            if (keep) {
+                moves[k] = m;
+                k += 1;
+            }
+        }
+        return k > 0 ? k : n;
+    }
+
+    /** The regions of the last position given to solveRegions. */
+    private final Regions _regions = new Regions();
+
+    /** Solver for the regions held by one side. */
+    private final Filler _filler = new Filler();
+
+    /** The first moves of the solutions of the regions of the player to
+     *  move in the last position given to solveRegions. */
+    private final int[] _fillMoves = new int[Board.BOARD_SIZE];
+
+    /** Number of moves in _fillMoves. */
+    private int _numFillMoves;
+
+    /** Correction for white to the static evaluation of the last
+     *  position given to solveRegions. */
+    private int _fillBonus;
+
+    /** Return the code of the move MOVE of a position, as made in its
+     *  image under symmetry SYM, the image whose key is stored in the
+     *  transposition table.  0 (no move) stays 0. */
+    private static int toCanonical(int sym, int move) {
+        return move == 0 ? 0 : Move.transformCode(sym, move);
+    }
+
+    /** Return the code of the move, in a position, whose image under
+     *  symmetry SYM is MOVE, as taken from the transposition table (see
+     *  toCanonical).  0 (no move) stays 0. */
+    private static int fromCanonical(int sym, int move) {
+        return move == 0 ? 0 : Move.transformCode(Square.inverse(sym), move);
+    }
+
+    /** Return the static evaluation of BOARD for white, from the
+     *  evaluation cache if possible. */
+    private int evaluate(Board board) {
+        if (_evalCache == null) {
+            return _evaluator.evaluate(board);
+        }
+        long key = board.canonicalHash();
+        int value = _evalCache.probe(key);
+        if (value == EvalCache.MISSING) {
+            value = _evaluator.evaluate(board);
+            _evalCache.store(key, value);
+        }
+        return value;
+    }
+
+    /** Return 1 if white is to move on BOARD, and -1 if black is.  This
+     *  converts scores for white to scores for the player to move. */
+    private static int sense(Board board) {
+        return board.turn() == WHITE ? 1 : -1;
+    }
+}
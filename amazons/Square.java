@@ -131,11 +131,31 @@ final class Square {
         return (dcol1 == dcol2) && (drow1 == drow2);
     }
 
+    /** Return my image under symmetry SYM (see transform(int, int)). */
+    Square transform(int sym) {
+        return SQUARES[TRANSFORM[sym][_index]];
+    }
+
     @Override
     public String toString() {
         return _str;
     }
 
+    /** Return the index of the image under symmetry SYM of the square
+     *  with index INDEX.  The board has SYMMETRIES symmetries (the
+     *  rotations and reflections of the square).  Symmetry #SYM first
+     *  exchanges columns and rows if bit 2 of SYM is set, then reverses
+     *  the columns if bit 0 is set and the rows if bit 1 is set; 0 is
+     *  the identity. */
+    static int transform(int sym, int index) {
+        return TRANSFORM[sym][index];
+    }
+
+    /** Return the symmetry that undoes symmetry SYM. */
+    static int inverse(int sym) {
+        return INVERSE[sym];
+    }
+
     /** Return true iff COL ROW is a legal square. */
     static boolean exists(int col, int row) {
         return row >= 0 && col >= 0 && row < Board.SIZE && col < Board.SIZE;
@@ -214,6 +234,47 @@ final class Square {
         }
     }
 
+    /** Number of symmetries of the board. */
+    static final int SYMMETRIES = 8;
+
+    /** TRANSFORM[SYM][I] is the index of the image of square I under
+     *  symmetry SYM. */
+    private static final int[][] TRANSFORM =
+        new int[SYMMETRIES][Board.SIZE * Board.SIZE];
+
+    /** INVERSE[SYM] is the symmetry that undoes symmetry SYM. */
+    private static final int[] INVERSE = new int[SYMMETRIES];
+
+    static {
+        int last = Board.SIZE - 1;
+        for (int sym = 0; sym < SYMMETRIES; sym += 1) {
+            for (int i = 0; i < Board.SIZE * Board.SIZE; i += 1) {
+                int col = i / Board.SIZE, row = i % Board.SIZE;
+                if ((sym & 4) != 0) {
+                    int t = col;
+                    col = row;
+                    row = t;
+                }
+                if ((sym & 1) != 0) {
+                    col = last - col;
+                }
+                if ((sym & 2) != 0) {
+                    row = last - row;
+                }
+                TRANSFORM[sym][i] = col * Board.SIZE + row;
+            }
+        }
+        for (int sym = 0; sym < SYMMETRIES; sym += 1) {
+            for (int inv = 0; inv < SYMMETRIES; inv += 1) {
+                if (TRANSFORM[inv][TRANSFORM[sym][1]] == 1
+                    && TRANSFORM[inv][TRANSFORM[sym][Board.SIZE]]
+                    == Board.SIZE) {
+                    INVERSE[sym] = inv;
+                }
+            }
+        }
+    }
+
     /** My index position. */
     private final int _index;
 
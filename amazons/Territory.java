@@ -0,0 +1,257 @@
+package amazons;
+
+import java.util.Arrays;
+
+import static amazons.BitBoards.*;
+import static amazons.Piece.*;
+
+/** Distance maps of a position, the basis of its territory score.
+ *  The queen distance of an empty square for a side is the least number
+ *  of queen moves one of that side's queens needs to reach it, moving
+ *  over empty squares only.  The squares at distance K + 1 are the
+ *  empty squares not yet reached that are a queen move away from those
+ *  at distance K, so the maps are built one distance (layer) at a time,
+ *  for all squares at once, by sliding the whole previous layer along
+ *  each of the eight directions with BitBoards shifts.  The layers are
+ *  kept in preallocated arrays and reused by each compute, so
+ *  evaluating a position allocates nothing.  A full compute also finds
+ *  the king distances (counting moves of one step, as a king's) and the
+ *  mobility (number of squares reachable in one move) of each queen.
+ *  @author Anastasia
+ */
+final class Territory {
+
+    /** The distance of a square that a side cannot reach. */
+    static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /** Compute the layers of both sides for the position whose occupied
+     *  squares are OCCLO, OCCHI, and whose white and black queens are
+     *  WHITELO, WHITEHI and BLACKLO, BLACKHI.  Unless FULL, only the
+     *  queen layers at distances 1 and 2 are computed. */
+    void compute(long occLo, long occHi, long whiteLo, long whiteHi,
+                 long blackLo, long blackHi, boolean full) {
+        int limit = full ? MAX_LAYERS : 2;
+        layers(WHITE_SIDE, ~occLo, ~occHi, whiteLo, whiteHi, limit);
+        layers(BLACK_SIDE, ~occLo, ~occHi, blackLo, blackHi, limit);
+        _numKingLayers[WHITE_SIDE] = _numKingLayers[BLACK_SIDE] = 0;
+        _numQueens[WHITE_SIDE] = _numQueens[BLACK_SIDE] = 0;
+        if (full) {
+            kingLayers(WHITE_SIDE, ~occLo, ~occHi, whiteLo, whiteHi);
+            kingLayers(BLACK_SIDE, ~occLo, ~occHi, blackLo, blackHi);
+            mobilities(WHITE_SIDE, occLo, occHi, whiteLo, whiteHi);
+            mobilities(BLACK_SIDE, occLo, occHi, blackLo, blackHi);
+        }
+    }
+
+    /** Return the number of non-empty layers of SIDE found by the last
+     *  compute. */
+    int numLayers(Piece side) {
+        return _numLayers[index(side)];
+    }
+
+    /** Return the low word of the set of squares at distance K from
+     *  SIDE's queens (empty beyond the last layer). */
+    long layerLo(Piece side, int k) {
+        return k <= numLayers(side) ? _lo[index(side)][k] : 0;
+    }
+
+    /** Return the high word of the set of squares at distance K from
+     *  SIDE's queens (empty beyond the last layer). */
+    long layerHi(Piece side, int k) {
+        return k <= numLayers(side) ? _hi[index(side)][k] : 0;
+    }
+
+    /** Return the number of non-empty king layers of SIDE found by the
+     *  last compute. */
+    int numKingLayers(Piece side) {
+        return _numKingLayers[index(side)];
+    }
+
+    /** Return the low word of the set of squares at king distance K
+     *  from SIDE's queens (empty beyond the last layer). */
+    long kingLayerLo(Piece side, int k) {
+        return k <= numKingLayers(side) ? _kingLo[index(side)][k] : 0;
+    }
+
+    /** Return the high word of the set of squares at king distance K
+     *  from SIDE's queens (empty beyond the last layer). */
+    long kingLayerHi(Piece side, int k) {
+        return k <= numKingLayers(side) ? _kingHi[index(side)][k] : 0;
+    }
+
+    /** Return the number of SIDE's queens whose mobility the last
+     *  compute found. */
+    int numQueens(Piece side) {
+        return _numQueens[index(side)];
+    }
+
+    /** Return the mobility of SIDE's queen #I, numbering the queens by
+     *  increasing square index. */
+    int mobility(Piece side, int i) {
+        return _mobility[index(side)][i];
+    }
+
+    /** Return the distance of the square with index SQ from SIDE's
+     *  queens, or UNREACHABLE if it lies in none of the computed
+     *  layers. */
+    int distance(Piece side, int sq) {
+        int s = index(side);
+        for (int k = 1; k <= _numLayers[s]; k += 1) {
+            if (contains(_lo[s][k], _hi[s][k], sq)) {
+                return k;
+            }
+        }
+        return UNREACHABLE;
+    }
+
+    /** Fill MAP, indexed by square, with the distances of all squares
+     *  from SIDE's queens (UNREACHABLE for squares in no layer). */
+    void distances(Piece side, int[] map) {
+        Arrays.fill(map, 0, Board.BOARD_SIZE, UNREACHABLE);
+        int s = index(side);
+        for (int k = 1; k <= _numLayers[s]; k += 1) {
+            long lo = _lo[s][k], hi = _hi[s][k];
+            while ((lo | hi) != 0) {
+                int sq = first(lo, hi);
+                lo &= ~loBit(sq);
+                hi &= ~hiBit(sq);
+                map[sq] = k;
+            }
+        }
+    }
+
+    /** Return the territory score of Board.boardScore from the layers:
+     *  the number of squares at distance 1 from white and 2 from black,
+     *  less the number at distance 1 from black and 2 from white.  Needs
+     *  a compute. */
+    int score() {
+        return count(layerLo(WHITE, 1) & layerLo(BLACK, 2),
+                     layerHi(WHITE, 1) & layerHi(BLACK, 2))
+            - count(layerLo(BLACK, 1) & layerLo(WHITE, 2),
+                    layerHi(BLACK, 1) & layerHi(WHITE, 2));
+    }
+
+    /** Compute the layers, up to distance LIMIT, of side S, whose
+     *  queens are QLO, QHI, where EMPTYLO, EMPTYHI are the empty squares
+     *  (possibly with bits for indices beyond the board, which the
+     *  shifts discard). */
+    private void layers(int s, long emptyLo, long emptyHi,
+                        long qLo, long qHi, int limit) {
+        long[] lo = _lo[s], hi = _hi[s];
+        long seenLo = 0, seenHi = 0;
+        long frontLo = qLo, frontHi = qHi;
+        int k = 0;
+        while (k < limit && (frontLo | frontHi) != 0) {
+            long nextLo = 0, nextHi = 0;
+            for (int dir = 0; dir < 8; dir += 1) {
+                long rayLo = frontLo, rayHi = frontHi;
+                while (true) {
+                    long sLo = shiftLo(rayLo, rayHi, dir) & emptyLo;
+                    long sHi = shiftHi(rayLo, rayHi, dir) & emptyHi;
+                    if ((sLo | sHi) == 0) {
+                        break;
+                    }
+                    nextLo |= sLo;
+                    nextHi |= sHi;
+                    rayLo = sLo;
+                    rayHi = sHi;
+                }
+            }
+            nextLo &= ~seenLo;
+            nextHi &= ~seenHi;
+            if ((nextLo | nextHi) == 0) {
+                break;
+            }
+            k += 1;
+            lo[k] = nextLo;
+            hi[k] = nextHi;
+            seenLo |= nextLo;
+            seenHi |= nextHi;
+            frontLo = nextLo;
+            frontHi = nextHi;
+        }
+        _numLayers[s] = k;
+    }
+
+    /** Compute all king layers of side S, as for layers. */
+    private void kingLayers(int s, long emptyLo, long emptyHi,
+                            long qLo, long qHi) {
+        long[] lo = _kingLo[s], hi = _kingHi[s];
+        long seenLo = 0, seenHi = 0;
+        long frontLo = qLo, frontHi = qHi;
+        int k = 0;
+        while (true) {
+            long nextLo = 0, nextHi = 0;
+            for (int dir = 0; dir < 8; dir += 1) {
+                nextLo |= shiftLo(frontLo, frontHi, dir);
+                nextHi |= shiftHi(frontLo, frontHi, dir);
+            }
+            nextLo &= emptyLo & ~seenLo;
+            nextHi &= emptyHi & ~seenHi;
+            if ((nextLo | nextHi) == 0) {
+                break;
+            }
+            k += 1;
+            lo[k] = nextLo;
+            hi[k] = nextHi;
+            seenLo |= nextLo;
+            seenHi |= nextHi;
+            frontLo = nextLo;
+            frontHi = nextHi;
+        }
+        _numKingLayers[s] = k;
+    }
+
+    /** Record the mobility of each queen of side S, whose queens are
+     *  QLO, QHI, where OCCLO, OCCHI are the occupied squares. */
+    private void mobilities(int s, long occLo, long occHi,
+                            long qLo, long qHi) {
+        int n = 0;
+        while ((qLo | qHi) != 0 && n < _mobility[s].length) {
+            int sq = first(qLo, qHi);
+            qLo &= ~loBit(sq);
+            qHi &= ~hiBit(sq);
+            queenReach(sq, occLo, occHi, _reach);
+            _mobility[s][n] = count(_reach[0], _reach[1]);
+            n += 1;
+        }
+        _numQueens[s] = n;
+    }
+
+    /** Return the index in my arrays of SIDE (WHITE or BLACK). */
+    private static int index(Piece side) {
+        return side == WHITE ? WHITE_SIDE : BLACK_SIDE;
+    }
+
+    /** Indices of the two sides in my arrays. */
+    private static final int WHITE_SIDE = 0, BLACK_SIDE = 1;
+
+    /** The largest distance a square can have. */
+    private static final int MAX_LAYERS = Board.BOARD_SIZE;
+
+    /** _lo[S][K] and _hi[S][K] are the low and high words of the layer at
+     *  distance K (1 <= K <= _numLayers[S]) of side S. */
+    private final long[][]
+        _lo = new long[2][MAX_LAYERS + 1],
+        _hi = new long[2][MAX_LAYERS + 1];
+
+    /** Number of layers found for each side. */
+    private final int[] _numLayers = new int[2];
+
+    /** The king layers, as for _lo and _hi. */
+    private final long[][]
+        _kingLo = new long[2][MAX_LAYERS + 1],
+        _kingHi = new long[2][MAX_LAYERS + 1];
+
+    /** Number of king layers found for each side. */
+    private final int[] _numKingLayers = new int[2];
+
+    /** _mobility[S][I] is the mobility of queen #I of side S. */
+    private final int[][] _mobility = new int[2][Board.BOARD_SIZE];
+
+    /** Number of queens of each side in _mobility. */
+    private final int[] _numQueens = new int[2];
+
+    /** Scratch space for the low and high words of a reachable set. */
+    private final long[] _reach = new long[2];
+}
@@ -0,0 +1,139 @@
+package amazons;
+
+import java.util.Arrays;
+
+/** A fixed-size table of search results, indexed by Board.hash.  The
+ *  table is allocated once and held in a single long array.  Each
+ *  bucket has two entries of two longs each (the full key and a packed
+ *  data word holding score, best move, depth, bound type, and the age of
+ *  the search that stored it).  The first entry of a bucket keeps the
+ *  deepest result of the current search; the second takes whatever the
+ *  first refuses.
+ *  <p>Several searches running in different threads may share one table
+ *  without locking.  Each entry holds its key XORed with its data word,
+ *  so that an entry torn by two stores racing (one thread's key with the
+ *  other's data) fails to match either key and reads as missing, rather
+ *  than handing a search the result for a different position.  A lost
+ *  store merely costs the work of redoing it.
+ *  @author Anastasia
+ */
+final class TranspositionTable {
+
+    /** Bound types of stored scores: the exact value, a lower bound on
+     *  the value (the search failed high), or an upper bound (the search
+     *  failed low). */
+    static final int EXACT = 1, LOWER = 2, UPPER = 3;
+
+    /** Number of longs per bucket. */
+    private static final int BUCKET = 4;
+
+    /** A table occupying about MEGABYTES megabytes (rounded down to a
+     *  power of two, and at least one bucket). */
+    TranspositionTable(int megabytes) {
+        long longs = (long) megabytes * (1 << 20) / Long.BYTES;
+        long buckets = Long.highestOneBit(Math.max(longs / BUCKET, 1));
+        buckets = Math.min(buckets, Integer.highestOneBit(
+                Integer.MAX_VALUE / BUCKET));
+        _slots = new long[(int) buckets * BUCKET];
+        _mask = buckets - 1;
+    }
+
+    /** Remove all entries. */
+    void clear() {
+        Arrays.fill(_slots, 0);
+    }
+
+    /** Mark the start of a new search.  Entries from earlier searches
+     *  remain available, but are replaced in preference to new ones. */
+    void newSearch() {
+        _age = (_age + 1) & AGE_MASK;
+    }
+
+    /** Return the data word stored for KEY, or 0 if there is none.  Use
+     *  score, move, depth, and bound to take it apart. */
+    long probe(long key) {
+        int b = bucket(key);
+        long data = _slots[b + 1];
+        if (data != 0 && (_slots[b] ^ data) == key) {
+            return data;
+        }
+        data = _slots[b + 3];
+        if (data != 0 && (_slots[b + 2] ^ data) == key) {
+            return data;
+        }
+        return 0;
+    }
+
+    /** Record that the position with KEY, searched to DEPTH, has a
+     *  value of SCORE with bound type BOUND, and that its best move has
+     *  code MOVE (0 if unknown). */
+    void store(long key, int depth, int bound, int score, int move) {
+        long data = (score & 0xffffffffL)
+            | ((long) move << MOVE_SHIFT)
+            | ((long) Math.min(depth, DEPTH_MASK) << DEPTH_SHIFT)
+            | ((long) bound << BOUND_SHIFT)
+            | ((long) _age << AGE_SHIFT);
+        int b = bucket(key);
+        long oldCheck = _slots[b], old = _slots[b + 1];
+        boolean same = (oldCheck ^ old) == key;
+        if (same || old == 0 || age(old) != _age || depth(old) <= depth) {
+            if (!same && old != 0) {
+                _slots[b + 2] = oldCheck;
+                _slots[b + 3] = old;
+            }
+            _slots[b] = key ^ data;
+            _slots[b + 1] = data;
+        } else {
+            _slots[b + 2] = key ^ data;
+            _slots[b + 3] = data;
+        }
+    }
+
+    /** Return the score in data word DATA. */
+    static int score(long data) {
+        return (int) data;
+    }
+
+    /** Return the code of the best move in data word DATA, or 0. */
+    static int move(long data) {
+        return (int) ((data >>> MOVE_SHIFT) & MOVE_MASK);
+    }
+
+    /** Return the search depth in data word DATA. */
+    static int depth(long data) {
+        return (int) ((data >>> DEPTH_SHIFT) & DEPTH_MASK);
+    }
+
+    /** Return the bound type (EXACT, LOWER, or UPPER) in data word
+     *  DATA. */
+    static int bound(long data) {
+        return (int) ((data >>> BOUND_SHIFT) & BOUND_MASK);
+    }
+
+    /** Return the age in data word DATA. */
+    private static int age(long data) {
+        return (int) (data >>> AGE_SHIFT);
+    }
+
+    /** Return the index in _slots of the bucket for KEY. */
+    private int bucket(long key) {
+        return (int) (key & _mask) * BUCKET;
+    }
+
+    /** Positions and widths of the fields of a data word.  The score
+     *  occupies the low 32 bits. */
+    private static final int
+        MOVE_SHIFT = 32, MOVE_MASK = (1 << 21) - 1,
+        DEPTH_SHIFT = 53, DEPTH_MASK = (1 << 6) - 1,
+        BOUND_SHIFT = 59, BOUND_MASK = 3,
+        AGE_SHIFT = 61, AGE_MASK = 7;
+
+    /** The buckets. */
+    private final long[] _slots;
+
+    /** Mask selecting a bucket number from a key. */
+    private final long _mask;
+
+    /** Age of the current search. */
+    private int _age;
+}
@@ -2,6 +2,15 @@ package amazons;
 
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
 import static amazons.Piece.*;
 import static amazons.Piece.WHITE;
 import static org.junit.Assert.*;
@@ -30,6 +39,744 @@ public class UnitTest {
         assertEquals(b.get(3, 5), EMPTY);
     }
 
+    /** Tests that makeMove and undo restore every square, and that
+     *  blocked and unblocked paths are told apart. */
+    @Test
+    public void testMakeMoveUndo() {
+        Board b = new Board();
+        b.makeMove(Move.mv("d1-d7(g7)"));
+        assertEquals(EMPTY, b.get(3, 0));
+        assertEquals(WHITE, b.get(3, 6));
+        assertEquals(SPEAR, b.get(6, 6));
+        assertFalse(b.isUnblockedMove(Square.sq("g1"), Square.sq("g8"), null));
+        assertTrue(b.isUnblockedMove(Square.sq("d9"), Square.sq("d2"),
+                                     Square.sq("d7")));
+        b.undo();
+        assertEquals(INIT_BOARD_STATE, b.toString());
+        assertEquals(WHITE, b.turn());
+        assertEquals(0, b.numMoves());
+    }
+
+    /** Tests that the winner follows changes to the board, including
+     *  undone moves. */
+    @Test
+    public void testWinner() {
+        Board b = new Board();
+        assertEquals(EMPTY, b.winner());
+        b.put(EMPTY, Square.sq("d1"));
+        b.put(EMPTY, Square.sq("g1"));
+        b.put(EMPTY, Square.sq("j4"));
+        b.put(WHITE, Square.sq("a1"));
+        b.put(SPEAR, Square.sq("b1"));
+        b.put(SPEAR, Square.sq("b2"));
+        assertEquals(EMPTY, b.winner());
+        b.makeMove(Move.mv("a4-a3(a2)"));
+        b.makeMove(Move.mv("a7-a6(a5)"));
+        b.put(SPEAR, Square.sq("b3"));
+        b.put(SPEAR, Square.sq("b4"));
+        assertEquals(EMPTY, b.winner());
+        b.makeMove(Move.mv("a3-a4(a3)"));
+        assertEquals(EMPTY, b.winner());
+        b.makeMove(Move.mv("a6-b5(a6)"));
+        assertEquals(BLACK, b.winner());
+        b.undo();
+        assertEquals(EMPTY, b.winner());
+    }
+
+    /** Tests that the position hash is restored by undo, agrees between
+     *  move orders reaching the same position, and matches put. */
+    @Test
+    public void testHash() {
+        Board b = new Board();
+        long initial = b.hash();
+        b.makeMove(Move.mv("d1-d7(g7)"));
+        b.makeMove(Move.mv("a7-b6(b2)"));
+        b.makeMove(Move.mv("g1-g4(h5)"));
+        long first = b.hash();
+        b.undo();
+        b.undo();
+        b.undo();
+        assertEquals(initial, b.hash());
+        b.makeMove(Move.mv("g1-g4(h5)"));
+        b.makeMove(Move.mv("a7-b6(b2)"));
+        b.makeMove(Move.mv("d1-d7(g7)"));
+        assertEquals(first, b.hash());
+        assertEquals(first, new Board(b).hash());
+
+        Board c = new Board();
+        c.makeMove(Move.mv("d1-d7(g7)"));
+        c.undo();
+        c.put(SPEAR, Square.sq("a1"));
+        assertNotEquals(initial, c.hash());
+        c.put(EMPTY, Square.sq("a1"));
+        assertEquals(initial, c.hash());
+    }
+
+    /** Tests storing and retrieving transposition table entries. */
+    @Test
+    public void testTranspositionTable() {
+        TranspositionTable table = new TranspositionTable(1);
+        int move = Move.mv("j10-a1(j10)").code();
+        table.store(42L, 5, TranspositionTable.LOWER, -1234, move);
+        long entry = table.probe(42L);
+        assertEquals(-1234, TranspositionTable.score(entry));
+        assertEquals(move, TranspositionTable.move(entry));
+        assertEquals(5, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        assertEquals(0, table.probe(43L));
+
+        long other = 42L + (1L << 40);
+        table.store(other, 2, TranspositionTable.EXACT, 7, 0);
+        assertEquals(5, TranspositionTable.depth(table.probe(42L)));
+        assertEquals(7, TranspositionTable.score(table.probe(other)));
+        table.clear();
+        assertEquals(0, table.probe(42L));
+    }
+
+    /** Tests that MoveOrdering puts the PV move, hash move, and killers
+     *  first, then the rest by history. */
+    @Test
+    public void testMoveOrdering() {
+        Board b = new Board();
+        int[] moves = new int[Board.MAX_MOVES];
+        int n = b.generateMoves(moves);
+        int pv = Move.mv("d1-d7(g7)").code(),
+            hash = Move.mv("a4-b5(c6)").code(),
+            killer = Move.mv("j4-j5(j4)").code(),
+            historic = Move.mv("g1-g2(g1)").code();
+        MoveOrdering ordering = new MoveOrdering(4);
+        ordering.cutoff(historic, 3, 2);
+        ordering.cutoff(killer, 2, 1);
+        ordering.order(moves, n, 2, pv, hash);
+        assertEquals(pv, moves[0]);
+        assertEquals(hash, moves[1]);
+        assertEquals(killer, moves[2]);
+        assertEquals(historic, moves[3]);
+        assertTrue(ordering.history(moves[4]) <= ordering.history(moves[3]));
+        assertEquals(n, b.generateMoves(new int[Board.MAX_MOVES]));
+    }
+
+    /** Tests that the AI's searches, in both modes, find the same values
+     *  as a plain minimax search of small trees. */
+    @Test
+    public void testSearchMatchesMinimax() {
+        Board b = smallBoard();
+        AI ai = new AI();
+        ai.setSelectivity(0, 0, 0);
+        AI split = new AI();
+        split.setSplitPly(true);
+        for (int move = 0; move < 2; move += 1) {
+            for (int depth = 1; depth <= 3; depth += 1) {
+                int expected = minimax(b, depth);
+                assertEquals(expected, ai.value(b, depth));
+                assertEquals(expected, split.value(b, 2 * depth));
+            }
+            b.makeMove(Move.mv("a1-b2(a1)"));
+        }
+    }
+
+    /** Tests that an AI running helper searches in other threads finds
+     *  the same values as one with a single thread, and legal moves,
+     *  through a small game and in a larger position.  Without
+     *  reductions or a beam, whatever the helpers leave in the shared
+     *  table cannot change the value of a search to a fixed depth. */
+    @Test
+    public void testLazySMP() {
+        AI single = new AI(), smp = new AI();
+        for (AI ai : new AI[] { single, smp }) {
+            ai.setTableSize(4);
+            ai.setSelectivity(0, 0, 0);
+        }
+        smp.setThreads(3);
+        Board b = smallBoard();
+        while (b.winner() == EMPTY) {
+            assertEquals(single.value(b, 3), smp.value(b, 3));
+            Move move = Move.mv(smp.bestMove());
+            assertTrue(b.isLegal(move));
+            b.makeMove(move);
+        }
+        b = Bench.position(40);
+        assertEquals(single.value(b, 2), smp.value(b, 2));
+        assertTrue(b.isLegal(Move.mv(smp.bestMove())));
+    }
+
+    /** Tests that a search whose time has already run out still stops
+     *  in its first iteration, once it has searched a move from the
+     *  root, and returns the best move it has found. */
+    @Test
+    public void testFirstIterationStops() {
+        Board b = new Board();
+        Search search = new Search(new TranspositionTable(1), null,
+                                   new Evaluator(), false, 0, 0, 0);
+        search.deepen(new Board(b), 0, Search.MAX_DEPTH,
+                      System.currentTimeMillis(), Long.MAX_VALUE);
+        assertEquals(0, search.completedDepth());
+        assertTrue(search.nodes() < b.generateMoves(new int[Board.MAX_MOVES]));
+        assertTrue(b.isLegal(Move.mv(search.bestMove())));
+    }
+
+    /** Tests that the beam keeps exactly its width of moves: the PV and
+     *  hash moves, even when their static estimates are the worst, and
+     *  the moves with the best estimates. */
+    @Test
+    public void testBeam() {
+        Board b = Bench.position(8);
+        Search search = new Search(new TranspositionTable(1), null,
+                                   new Evaluator(), false, 5, 0, 0);
+        int[] moves = new int[Board.MAX_MOVES];
+        int n = b.generateMoves(moves);
+        int[] estimates = new int[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i += 1) {
+            b.makeMove(moves[i]);
+            estimates[i] = (b.turn() == WHITE ? -1 : 1) * b.boardScore();
+            b.undo();
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> estimates[i] - estimates[j]);
+        int pvMove = moves[order[0]], hashMove = moves[order[1]];
+        int[] kept = moves.clone();
+        assertEquals(5, search.beam(b, kept, n, pvMove, hashMove));
+        int found = 0, worstKept = Integer.MAX_VALUE;
+        for (int k = 0; k < 5; k += 1) {
+            if (kept[k] == pvMove || kept[k] == hashMove) {
+                found += 1;
+            } else {
+                for (int i = 0; i < n; i += 1) {
+                    if (moves[i] == kept[k]) {
+                        worstKept = Math.min(worstKept, estimates[i]);
+                    }
+                }
+            }
+        }
+        assertEquals(2, found);
+        assertEquals(estimates[order[n - 3]], worstKept);
+    }
+
+    /** Tests late-move reductions at a depth where they apply only at
+     *  the root.  The reduced search visits fewer nodes and finds a legal
+     *  move, whose value is that of a full-width search of it, since a
+     *  reduced move that beats the best so far is searched again to full
+     *  depth.  Its value cannot exceed that of a full-width search. */
+    @Test
+    public void testReductions() {
+        AI reduced = new AI(), full = new AI();
+        reduced.setSelectivity(0, 2, 4);
+        full.setSelectivity(0, 0, 0);
+        for (int plies : new int[] { 40, 50 }) {
+            Board b = Bench.position(plies);
+            int value = reduced.value(b, 3);
+            Move move = Move.mv(reduced.bestMove());
+            long nodes = reduced.nodes();
+            int fullValue = full.value(b, 3);
+            assertTrue(nodes < full.nodes());
+            assertTrue(value <= fullValue);
+            assertTrue(b.isLegal(move));
+            b.makeMove(move);
+            assertEquals(value, -full.value(b, 2));
+        }
+    }
+
+    /** Return a board whose only empty squares form a 4x3 region in its
+     *  lower left corner, holding two queens of each side, so that its
+     *  game trees are small. */
+    private Board smallBoard() {
+        Board b = walledBoard("a1", "d3");
+        b.put(WHITE, Square.sq("a1"));
+        b.put(WHITE, Square.sq("d3"));
+        b.put(BLACK, Square.sq("a3"));
+        b.put(BLACK, Square.sq("d1"));
+        return b;
+    }
+
+    /** Tests that Monte Carlo tree search, playing a small game out,
+     *  always takes an immediate win when one is available. */
+    @Test
+    public void testMCTSTakesWins() {
+        Board b = smallBoard();
+        MCTSPlayer player = new MCTSPlayer();
+        player.setTreeSize(1);
+        int[] moves = new int[Board.MAX_MOVES];
+        int wins = 0;
+        while (b.winner() == EMPTY) {
+            int move = player.search(new Board(b), Long.MAX_VALUE, 2000);
+            int n = b.generateMoves(moves);
+            boolean canWin = false;
+            for (int i = 0; i < n; i += 1) {
+                b.makeMove(moves[i]);
+                canWin |= b.winner() != EMPTY;
+                b.undo();
+            }
+            Piece mover = b.turn();
+            b.makeMove(move);
+            if (canWin) {
+                assertEquals(mover, b.winner());
+                wins += 1;
+            }
+        }
+        assertEquals(1, wins);
+    }
+
+    /** Tests a Monte Carlo tree search with several workers: it does
+     *  the iterations asked for, finds a legal move, and leaves no
+     *  virtual loss in the tree, so that each node's visits are those of
+     *  its children, plus the iteration that added it. */
+    @Test
+    public void testMCTSThreads() {
+        Board b = new Board();
+        MCTSPlayer player = new MCTSPlayer();
+        player.setTreeSize(1);
+        player.setThreads(3);
+        int move = player.search(new Board(b), Long.MAX_VALUE, 3000);
+        assertTrue(b.isLegal(Move.mv(move)));
+        assertEquals(3000, player.iterations());
+        assertEquals(3000, player.visits(0));
+        assertEquals(3000, childVisits(player, 0));
+        for (int node = 1; node < player.treeSize(); node += 1) {
+            assertEquals(player.visits(node),
+                         1 + childVisits(player, node));
+        }
+    }
+
+    /** Return the total visits of the children of NODE in the tree of
+     *  PLAYER's last search. */
+    private int childVisits(MCTSPlayer player, int node) {
+        int total = 0;
+        for (int child : player.children(node)) {
+            total += player.visits(child);
+        }
+        return total;
+    }
+
+    /** Tests that the regions of a walled-off board are found and given
+     *  the right kinds. */
+    @Test
+    public void testRegions() {
+        Board b = walledBoard("a1", "c3", "e5", "e5", "h8", "j10");
+        b.put(WHITE, Square.sq("a1"));
+        b.put(BLACK, Square.sq("c3"));
+        b.put(WHITE, Square.sq("j10"));
+        Regions regions = new Regions();
+        b.computeRegions(regions);
+        assertEquals(3, regions.count());
+        assertEquals(1, regions.numContested());
+        assertEquals(Regions.CONTESTED, regions.kind(0));
+        assertEquals(7, regions.numEmpty(0));
+        assertEquals(Regions.DEAD, regions.kind(1));
+        assertEquals(1, regions.numEmpty(1));
+        assertEquals(Regions.WHITE_ONLY, regions.kind(2));
+        assertEquals(8, regions.numEmpty(2));
+    }
+
+    /** Tests the filling numbers of a defective and a full region, and
+     *  that the search sees the result of a game that they decide. */
+    @Test
+    public void testFiller() {
+        Board b = walledBoard("a1", "c2", "a4", "a7", "j1", "j2");
+        b.put(SPEAR, Square.sq("b1"));
+        b.put(SPEAR, Square.sq("a2"));
+        b.put(SPEAR, Square.sq("c2"));
+        b.put(WHITE, Square.sq("b2"));
+        b.put(WHITE, Square.sq("a4"));
+        b.put(BLACK, Square.sq("j1"));
+        Regions regions = new Regions();
+        b.computeRegions(regions);
+        assertEquals(3, regions.count());
+        Filler filler = new Filler();
+        int[] expected = { 1, 3, 1 };
+        for (int r = 0; r < 3; r += 1) {
+            long emptyLo = regions.emptyLo(r), emptyHi = regions.emptyHi(r);
+            int n = filler.solve(emptyLo, emptyHi, regions.lo(r) & ~emptyLo,
+                                 regions.hi(r) & ~emptyHi);
+            assertEquals(expected[r], n);
+            assertEquals(n, filler.upper());
+            if (regions.kind(r) == Regions.WHITE_ONLY) {
+                assertTrue(b.isLegal(Move.mv(filler.firstMove())));
+            }
+        }
+        assertEquals(AI.WINNING_VALUE, new AI().value(b, 1));
+    }
+
+    /** Tests that the proof-number solver proves the same results as
+     *  an exhaustive search, and that its lines are legal and begin with
+     *  a winning move when there is one. */
+    @Test
+    public void testProofSearch() {
+        ProofSearch solver = new ProofSearch(1);
+        Board b = smallBoard();
+        String[] moves = { "a1-b2(a1)", "a3-a2(b3)", "d3-c3(d3)" };
+        for (String move : moves) {
+            boolean won = wins(b);
+            assertEquals(won ? ProofSearch.WIN : ProofSearch.LOSS,
+                         solver.prove(b, Long.MAX_VALUE));
+            Board c = new Board(b);
+            for (int m : solver.line()) {
+                assertTrue(c.isLegal(Move.mv(m)));
+                c.makeMove(m);
+            }
+            if (won) {
+                c = new Board(b);
+                c.makeMove(solver.bestMove());
+                assertFalse(wins(c));
+            }
+            b.makeMove(Move.mv(move));
+        }
+    }
+
+    /** Return true iff the player to move on B can force a win, as found
+     *  by an exhaustive search. */
+    private boolean wins(Board b) {
+        int[] moves = new int[Board.MAX_MOVES];
+        int n = b.generateMoves(moves);
+        for (int i = 0; i < n; i += 1) {
+            b.makeMove(moves[i]);
+            boolean won = !wins(b);
+            b.undo();
+            if (won) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Tests that the keys of the images of a position under the
+     *  symmetries of the board, kept up to date by makeMove and undo,
+     *  are those of the transformed positions, so that the images share
+     *  a canonical key. */
+    @Test
+    public void testSymmetricHashes() {
+        Board b = new Board();
+        Random random = new Random(22);
+        int[] moves = new int[Board.MAX_MOVES];
+        for (int k = 0; k < 12; k += 1) {
+            b.makeMove(moves[random.nextInt(b.generateMoves(moves))]);
+        }
+        assertEquals(WHITE, b.turn());
+        for (int sym = 0; sym < Square.SYMMETRIES; sym += 1) {
+            Board image = new Board();
+            for (int sq = 0; sq < Board.BOARD_SIZE; sq += 1) {
+                image.put(b.get(sq), Square.sq(Square.transform(sym, sq)));
+            }
+            long key = 0;
+            for (int sq = 0; sq < Board.BOARD_SIZE; sq += 1) {
+                key ^= Board.squareKey(image.get(sq), sq);
+            }
+            assertEquals(key, b.hash(sym));
+            assertEquals(key, image.hash());
+            assertEquals(b.canonicalHash(), image.canonicalHash());
+            b.generateMoves(moves);
+            b.makeMove(moves[0]);
+            b.undo();
+            assertEquals(key, b.hash(sym));
+            assertEquals(Square.sq("a1"), Square.sq(Square.transform(
+                Square.inverse(sym), Square.transform(sym, 0))));
+        }
+        Move mv = Move.mv("d1-d7(g7)");
+        assertEquals(Move.mv("g1-g7(d7)"), mv.transform(1));
+        assertEquals(Move.mv("a4-g4(g7)"), mv.transform(4));
+    }
+
+    /** Tests that an opening book written to a file finds its moves in
+     *  the positions it holds and in their mirror images. */
+    @Test
+    public void testOpeningBook() throws IOException {
+        Board b = new Board();
+        b.makeMove(Move.mv("d1-d7(g7)"));
+        int sym = b.canonicalSymmetry();
+        int reply = Move.mv("a7-b6(b2)").code();
+        long[] keys = { b.hash(sym) };
+        int[] moves = { Move.transformCode(sym, reply) };
+        File file = File.createTempFile("amazons", ".book");
+        try {
+            OpeningBook.write(file.getPath(), keys, moves, 1);
+            OpeningBook book = OpeningBook.open(file.getPath());
+            assertEquals(1, book.size());
+            assertEquals(reply, book.probe(b));
+            assertEquals(0, book.probe(new Board()));
+            Board mirror = new Board();
+            mirror.makeMove(Move.mv("g1-g7(d7)"));
+            assertEquals(Move.mv("j7-i6(i2)").code(), book.probe(mirror));
+        } finally {
+            file.delete();
+        }
+    }
+
+    /** Tests that the bench suite gives the same results on every run,
+     *  and that a search limited by nodes stops soon after the limit,
+     *  once its first iteration is done. */
+    @Test
+    public void testBench() {
+        AI ai = new AI();
+        ai.setTableSize(4);
+        PrintStream sink = new PrintStream(new ByteArrayOutputStream());
+        assertEquals(Bench.run(ai, 2, 0, sink), Bench.run(ai, 2, 0, sink));
+        ai.forget();
+        Board b = Bench.position(8);
+        ai.value(b, Search.MAX_DEPTH, 5000);
+        assertTrue(ai.nodes() > 5000 && ai.nodes() < 5100);
+        assertTrue(b.isLegal(Move.mv(ai.bestMove())));
+    }
+
+    /** Tests pondering through a Controller.  After its first move, an
+     *  AI searches the position it leads to in the background, until
+     *  its next move stops the search and waits for it to end; the
+     *  transposition table then holds that position.  The first move is
+     *  given too little time to search past depth 1, which stores
+     *  nothing for the positions after it, so the entry found must come
+     *  from pondering. */
+    @Test
+    public void testPonder() throws InterruptedException {
+        AI template = new AI();
+        template.setTableSize(4);
+        template.setTimeLimits(1, AI.DEFAULT_GAME_TIME);
+        template.setPonder(true);
+        Controller controller =
+            new Controller(new NullView(), null, new QuietReporter(),
+                           template, template);
+        Board b = controller.board();
+        AI ai = (AI) template.create(WHITE, controller);
+        Move first = Move.mv(ai.myMove());
+        assertTrue(b.isLegal(first));
+        b.makeMove(first);
+        long key = b.canonicalHash();
+        assertTrue(ai.pondering());
+        Thread.sleep(500);
+        b.makeMove(b.legalMoves().next());
+        ai.stopThinking();
+        assertFalse(ai.pondering());
+        long entry = ai.table().probe(key);
+        assertTrue(TranspositionTable.depth(entry) >= 1);
+        Move second = Move.mv(ai.myMove());
+        assertTrue(b.isLegal(second));
+        ai.stopThinking();
+    }
+
+    /** A Reporter that reports nothing. */
+    private static class QuietReporter implements Reporter {
+        @Override
+        public void reportError(String format, Object... args) {
+        }
+
+        @Override
+        public void reportNote(String format, Object... args) {
+        }
+
+        @Override
+        public void reportMove(Move move) {
+        }
+    }
+
+    /** Check that a root split search with reductions finds the same
+     *  moves as the main search of an AI with the same settings when it
+     *  runs on one thread, and legal ones on several; that each iteration
+     *  orders the root moves by their values, so that the next reduces
+     *  those that did worst (the values at depth 1 being exact); and that
+     *  it returns a legal move even when it has no time at all. */
+    @Test
+    public void testRootSplit() {
+        AI ai = new AI();
+        ai.setTableSize(4);
+        TranspositionTable table = new TranspositionTable(4);
+        RootSplit single =
+            new RootSplit(1, new TranspositionTable(4), null,
+                          new Evaluator(), 0, AI.DEFAULT_REDUCE_AFTER,
+                          AI.DEFAULT_REDUCE_MORE_AFTER);
+        RootSplit splitter =
+            new RootSplit(3, table, null, new Evaluator(), 0,
+                          AI.DEFAULT_REDUCE_AFTER,
+                          AI.DEFAULT_REDUCE_MORE_AFTER);
+        Search search = new Search(table, null, new Evaluator(), false,
+                                   0, 0, 0);
+        try {
+            for (int plies : new int[] { 8, 24 }) {
+                Board b = Bench.position(plies);
+                ai.forget();
+                ai.value(b, 3);
+                int move = single.findMove(b, 3, Long.MAX_VALUE,
+                                           Long.MAX_VALUE);
+                assertEquals(Move.mv(ai.bestMove()), Move.mv(move));
+                move = splitter.findMove(b, 3, Long.MAX_VALUE,
+                                         Long.MAX_VALUE);
+                assertTrue(b.isLegal(Move.mv(move)));
+
+                splitter.findMove(b, 1, Long.MAX_VALUE, Long.MAX_VALUE);
+                int last = Integer.MAX_VALUE;
+                for (int m : splitter.rootMoves()) {
+                    int value = search.searchMove(b, m, 1,
+                                                  -Integer.MAX_VALUE,
+                                                  Integer.MAX_VALUE,
+                                                  Long.MAX_VALUE);
+                    assertTrue(value <= last);
+                    last = value;
+                }
+
+                move = splitter.findMove(b, Search.MAX_DEPTH,
+                                         System.currentTimeMillis(),
+                                         Long.MAX_VALUE);
+                assertTrue(b.isLegal(Move.mv(move)));
+            }
+        } finally {
+            single.shutdown();
+            splitter.shutdown();
+        }
+    }
+
+    /** Check that an AI will not split the root in split-ply mode. */
+    @Test
+    public void testRootSplitNotSplitPly() {
+        AI ai = new AI();
+        ai.setSplitPly(true);
+        try {
+            ai.setRootSplit(true);
+            fail("split the root in split-ply mode");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+        ai.setSplitPly(false);
+        ai.setRootSplit(true);
+        try {
+            ai.setSplitPly(true);
+            fail("split-ply mode while splitting the root");
+        } catch (IllegalArgumentException excp) {
+            /* Expected. */
+        }
+    }
+
+    /** Return a board of spears, except for empty rectangles, each given
+     *  by the names of two opposite corners in CORNERS. */
+    private Board walledBoard(String... corners) {
+        Board b = new Board();
+        for (int sq = 0; sq < Board.BOARD_SIZE; sq += 1) {
+            b.put(SPEAR, Square.sq(sq));
+        }
+        for (int i = 0; i < corners.length; i += 2) {
+            Square s0 = Square.sq(corners[i]), s1 = Square.sq(corners[i + 1]);
+            for (int col = s0.col(); col <= s1.col(); col += 1) {
+                for (int row = s0.row(); row <= s1.row(); row += 1) {
+                    b.put(EMPTY, Square.sq(col, row));
+                }
+            }
+        }
+        return b;
+    }
+
+    /** Return the negamax value of B for the player to move, searched
+     *  DEPTH moves deep without pruning. */
+    private int minimax(Board b, int depth) {
+        int sense = b.turn() == WHITE ? 1 : -1;
+        if (b.winner() != EMPTY) {
+            return b.winner() == b.turn()
+                ? AI.WINNING_VALUE : -AI.WINNING_VALUE;
+        } else if (depth == 0) {
+            return sense * new Evaluator().evaluate(b);
+        }
+        int[] moves = new int[Board.MAX_MOVES];
+        int n = b.generateMoves(moves);
+        int best = -Integer.MAX_VALUE;
+        for (int i = 0; i < n; i += 1) {
+            b.makeMove(moves[i]);
+            best = Math.max(best, -minimax(b, depth - 1));
+            b.undo();
+        }
+        return best;
+    }
+
+    /** Tests that boardScore, computed from Territory's distance layers,
+     *  agrees with the squares found by reachableFrom along a game. */
+    @Test
+    public void testBoardScore() {
+        Board b = new Board();
+        int[] moves = new int[Board.MAX_MOVES];
+        for (int k = 0; b.winner() == EMPTY; k += 1) {
+            int[] white = reachMap(b, WHITE), black = reachMap(b, BLACK);
+            int expected = 0;
+            for (int sq = 0; sq < Board.BOARD_SIZE; sq += 1) {
+                if (white[sq] == 1 && black[sq] == 2) {
+                    expected += 1;
+                } else if (black[sq] == 1 && white[sq] == 2) {
+                    expected -= 1;
+                }
+            }
+            assertEquals(expected, b.boardScore());
+            int n = b.generateMoves(moves);
+            b.makeMove(moves[(k * 7919) % n]);
+        }
+    }
+
+    /** Return the queen distances (1 or 2, else 0) of the squares of B
+     *  from SIDE's queens, found with reachableFrom. */
+    private int[] reachMap(Board b, Piece side) {
+        int[] map = new int[Board.BOARD_SIZE];
+        for (int sq = 0; sq < Board.BOARD_SIZE; sq += 1) {
+            if (b.get(Square.sq(sq)) == side) {
+                Iterator<Square> reach = b.reachableFrom(Square.sq(sq), null);
+                while (reach.hasNext()) {
+                    map[reach.next().index()] = 1;
+                }
+            }
+        }
+        for (int sq = 0; sq < Board.BOARD_SIZE; sq += 1) {
+            if (map[sq] == 1) {
+                Iterator<Square> reach = b.reachableFrom(Square.sq(sq), null);
+                while (reach.hasNext()) {
+                    int to = reach.next().index();
+                    if (map[to] == 0) {
+                        map[to] = 2;
+                    }
+                }
+            }
+        }
+        return map;
+    }
+
+    /** Tests that the Evaluator is antisymmetric between the sides, that
+     *  it favors a side whose queen is shut in less, and that its
+     *  weights can be read. */
+    @Test
+    public void testEvaluator() {
+        Evaluator eval = new Evaluator();
+        Board b = new Board();
+        b.makeMove(Move.mv("d1-d2(d1)"));
+        Board mirror = new Board();
+        mirror.put(EMPTY, Square.sq("d10"));
+        mirror.put(BLACK, Square.sq("d9"));
+        mirror.put(SPEAR, Square.sq("d10"));
+        int value = eval.evaluate(b);
+        assertEquals(-value, eval.evaluate(mirror));
+        b.put(SPEAR, Square.sq("a8"));
+        b.put(SPEAR, Square.sq("b8"));
+        b.put(SPEAR, Square.sq("b7"));
+        b.put(SPEAR, Square.sq("b6"));
+        assertTrue(eval.evaluate(b) > value);
+
+        Evaluator read = Evaluator.read(new StringReader("0 0 0 1\n0 0 0 1"));
+        assertArrayEquals(new int[] { 0, 0, 0, 1, 0, 0, 0, 1 },
+                          read.weights());
+        assertEquals(0, read.evaluate(new Board()));
+    }
+
+    /** Tests storing, finding, and evicting cached evaluations, and the
+     *  hit and miss counts. */
+    @Test
+    public void testEvalCache() {
+        EvalCache cache = new EvalCache(1);
+        assertEquals(EvalCache.MISSING, cache.probe(5L));
+        cache.store(5L, -17);
+        assertEquals(-17, cache.probe(5L));
+        long step = 1L << 40;
+        cache.store(5L + step, 3);
+        assertEquals(-17, cache.probe(5L));
+        cache.store(5L + 2 * step, 4);
+        assertEquals(-17, cache.probe(5L));
+        assertEquals(4, cache.probe(5L + 2 * step));
+        assertEquals(EvalCache.MISSING, cache.probe(5L + step));
+        assertEquals(4, cache.hits());
+        assertEquals(2, cache.misses());
+        cache.clear();
+        assertEquals(EvalCache.MISSING, cache.probe(5L));
+        assertEquals(0, cache.hits());
+    }
+
     /** Tests proper identification of legal/illegal queen moves. */
     @Test
     public void testIsQueenMove() {
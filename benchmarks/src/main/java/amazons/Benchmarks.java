@@ -0,0 +1,23 @@
+package amazons;
+
+import java.util.Arrays;
+
+/** The main program of the benchmarks jar.  It runs JMH with the
+ *  arguments given (see java -jar benchmarks.jar -h), adding the GC
+ *  profiler, which reports the allocation rate of each benchmark,
+ *  unless another profiler is asked for.
+ *  @author Anastasia
+ */
+public class Benchmarks {
+
+    /** Run the benchmarks selected by ARGS, as JMH would. */
+    public static void main(String... args) throws Exception {
+        if (!Arrays.asList(args).contains("-prof")) {
+            String[] withGC = Arrays.copyOf(args, args.length + 2);
+            withGC[args.length] = "-prof";
+            withGC[args.length + 1] = "gc";
+            args = withGC;
+        }
+        org.openjdk.jmh.Main.main(args);
+    }
+}
@@ -0,0 +1,133 @@
+package amazons;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of the Board methods used to find and check moves and to
+ *  score positions, on each of the positions of Positions.  Each
+ *  benchmark does the work for the whole position (all queens of the
+ *  side to move, or all the lines checked), and returns a count, so
+ *  that the work cannot be optimized away.
+ *  @author Anastasia
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BoardBenchmark {
+
+    /** The phase of the game of the position benchmarked. */
+    @Param({ Positions.OPENING, Positions.MIDGAME, Positions.ENDGAME })
+    public String phase;
+
+    /** Set up the position for phase, and the lines and queens used by
+     *  the benchmarks. */
+    @Setup
+    public void setup() {
+        _board = Positions.position(phase);
+        List<Square> queens = new ArrayList<>(), froms = new ArrayList<>(),
+            tos = new ArrayList<>();
+        for (int sq = 0; sq < Board.BOARD_SIZE; sq += 1) {
+            Square from = Square.sq(sq);
+            if (_board.get(from) != _board.turn()) {
+                continue;
+            }
+            queens.add(from);
+            for (int dir = 0; dir < 8; dir += 1) {
+                for (int steps = 1;; steps += 1) {
+                    Square to = from.queenMove(dir, steps);
+                    if (to == null) {
+                        break;
+                    }
+                    froms.add(from);
+                    tos.add(to);
+                }
+            }
+        }
+        _queens = queens.toArray(new Square[0]);
+        _froms = froms.toArray(new Square[0]);
+        _tos = tos.toArray(new Square[0]);
+    }
+
+    /** Check every queen line from the queens of the side to move, and
+     *  return the number that are unblocked. */
+    @Benchmark
+    public int isUnblockedMove() {
+        int n = 0;
+        for (int i = 0; i < _froms.length; i += 1) {
+            if (_board.isUnblockedMove(_froms[i], _tos[i], null)) {
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** Return the number of squares reachable by the queens of the side
+     *  to move, as delivered by reachableFrom. */
+    @Benchmark
+    public int reachableFrom() {
+        int n = 0;
+        for (Square queen : _queens) {
+            Iterator<Square> squares = _board.reachableFrom(queen, null);
+            while (squares.hasNext()) {
+                squares.next();
+                n += 1;
+            }
+        }
+        return n;
+    }
+
+    /** Return the number of legal moves, as delivered by legalMoves. */
+    @Benchmark
+    public int legalMoves() {
+        int n = 0;
+        Iterator<Move> moves = _board.legalMoves();
+        while (moves.hasNext()) {
+            moves.next();
+            n += 1;
+        }
+        return n;
+    }
+
+    /** Return the number of legal moves, as found by generateMoves, for
+     *  comparison with legalMoves. */
+    @Benchmark
+    public int generateMoves() {
+        return _board.generateMoves(_buffer);
+    }
+
+    /** Return the score of the position. */
+    @Benchmark
+    public int boardScore() {
+        return _board.boardScore();
+    }
+
+    /** The position benchmarked. */
+    private Board _board;
+
+    /** The squares of the queens of the side to move. */
+    private Square[] _queens;
+
+    /** The queen lines checked by isUnblockedMove: from _froms[I] to
+     *  _tos[I], for every square in line with each queen. */
+    private Square[] _froms, _tos;
+
+    /** Buffer for generateMoves. */
+    private final int[] _buffer = new int[Board.MAX_MOVES];
+}
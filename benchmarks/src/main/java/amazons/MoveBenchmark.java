@@ -0,0 +1,116 @@
+package amazons;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Benchmarks of the factory methods of Square and Move, and of
+ *  Square.queenMove.  The Move benchmarks look up the legal moves of
+ *  each of the positions of Positions; the Square benchmarks use every
+ *  square, and so do not depend on the position.
+ *  @author Anastasia
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoveBenchmark {
+
+    /** The phase of the game of the position whose moves are used. */
+    @Param({ Positions.OPENING, Positions.MIDGAME, Positions.ENDGAME })
+    public String phase;
+
+    /** Set up the legal moves of the position for phase, as squares and
+     *  as text, and the names of all squares. */
+    @Setup
+    public void setup() {
+        Board board = Positions.position(phase);
+        int[] buffer = new int[Board.MAX_MOVES];
+        int n = board.generateMoves(buffer);
+        _from = new Square[n];
+        _to = new Square[n];
+        _spear = new Square[n];
+        _moveNames = new String[n];
+        for (int i = 0; i < n; i += 1) {
+            _from[i] = Square.sq(Move.codeFrom(buffer[i]));
+            _to[i] = Square.sq(Move.codeTo(buffer[i]));
+            _spear[i] = Square.sq(Move.codeSpear(buffer[i]));
+            _moveNames[i] = Move.mv(buffer[i]).toString();
+        }
+        _squareNames = new String[Board.BOARD_SIZE];
+        for (int sq = 0; sq < Board.BOARD_SIZE; sq += 1) {
+            _squareNames[sq] = Square.sq(sq).toString();
+        }
+    }
+
+    /** Look up each legal move by its squares, with Move.mv. */
+    @Benchmark
+    public void mvSquares(Blackhole sink) {
+        for (int i = 0; i < _from.length; i += 1) {
+            sink.consume(Move.mv(_from[i], _to[i], _spear[i]));
+        }
+    }
+
+    /** Parse each legal move from its text, with Move.mv. */
+    @Benchmark
+    public void mvString(Blackhole sink) {
+        for (String name : _moveNames) {
+            sink.consume(Move.mv(name));
+        }
+    }
+
+    /** Look up every square by its column and row, with Square.sq. */
+    @Benchmark
+    public void sqColRow(Blackhole sink) {
+        for (int col = 0; col < Board.SIZE; col += 1) {
+            for (int row = 0; row < Board.SIZE; row += 1) {
+                sink.consume(Square.sq(col, row));
+            }
+        }
+    }
+
+    /** Parse every square from its name, with Square.sq. */
+    @Benchmark
+    public void sqString(Blackhole sink) {
+        for (String name : _squareNames) {
+            sink.consume(Square.sq(name));
+        }
+    }
+
+    /** Find every queen move of every length in every direction from
+     *  every square (most of which leave the board), with
+     *  Square.queenMove. */
+    @Benchmark
+    public void queenMove(Blackhole sink) {
+        for (int sq = 0; sq < Board.BOARD_SIZE; sq += 1) {
+            Square from = Square.sq(sq);
+            for (int dir = 0; dir < 8; dir += 1) {
+                for (int steps = 1; steps < Board.SIZE; steps += 1) {
+                    sink.consume(from.queenMove(dir, steps));
+                }
+            }
+        }
+    }
+
+    /** The squares of the legal moves of the position, by move. */
+    private Square[] _from, _to, _spear;
+
+    /** The text of the legal moves of the position. */
+    private String[] _moveNames;
+
+    /** The names of all squares, by index. */
+    private String[] _squareNames;
+}
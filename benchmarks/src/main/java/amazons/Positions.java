@@ -0,0 +1,28 @@
+package amazons;
+
+/** The positions on which the benchmarks run, one for each phase of a
+ *  game, made in the same way as those of the bench suite (see
+ *  Bench.position).
+ *  @author Anastasia
+ */
+final class Positions {
+
+    /** The phases of the game, as given to the benchmarks' phase
+     *  parameter. */
+    static final String OPENING = "opening", MIDGAME = "midgame",
+        ENDGAME = "endgame";
+
+    /** Return a new Board holding the position for PHASE. */
+    static Board position(String phase) {
+        switch (phase) {
+        case OPENING:
+            return Bench.position(2);
+        case MIDGAME:
+            return Bench.position(24);
+        case ENDGAME:
+            return Bench.position(50);
+        default:
+            throw new IllegalArgumentException("unknown phase: " + phase);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package amazons;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Benchmarks of a search by the AI to a fixed depth, on each of the
+ *  positions of Positions.  The AI forgets everything learned by the
+ *  previous search before each one (see AI.forget), so that every
+ *  search does the same work; its tables are allocated once, outside
+ *  the measurements.
+ *  @author Anastasia
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    /** The phase of the game of the position searched. */
+    @Param({ Positions.OPENING, Positions.MIDGAME, Positions.ENDGAME })
+    public String phase;
+
+    /** The depth of the search, in moves. */
+    @Param({ "1", "2", "3" })
+    public int depth;
+
+    /** Set up the position for phase and the AI, and have the AI
+     *  allocate its tables. */
+    @Setup(Level.Trial)
+    public void setup() {
+        _board = Positions.position(phase);
+        _ai = new AI();
+        _ai.value(_board, 1);
+    }
+
+    /** Make the AI forget its earlier searches. */
+    @Setup(Level.Invocation)
+    public void forget() {
+        _ai.forget();
+    }
+
+    /** Return the value of the position, as found by the AI searching
+     *  it depth moves deep. */
+    @Benchmark
+    public int search() {
+        return _ai.value(_board, depth);
+    }
+
+    /** The position searched. */
+    private Board _board;
+
+    /** The AI searching. */
+    private AI _ai;
+}